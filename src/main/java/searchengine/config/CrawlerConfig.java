@@ -14,4 +14,34 @@ public class CrawlerConfig {
     private String referrer;
     private int delayMinMs;
     private int delayMaxMs;
+    private int delayStepMs = 100;
+    private int maxConcurrentSites = 4;
+    private int minConcurrentPagesPerSite = 1;
+    private int maxConcurrentPagesPerSite = 8;
+    private double maxErrorRate = 0.05;
+    private int maxDepth;
+    private int maxPagesPerSite;
+    private String visitedSet = "fingerprint";
+    private long bloomExpectedUrls = 1_000_000;
+    private double bloomFalsePositiveRate = 0.001;
+    private boolean detectDuplicates = true;
+    private int duplicateMaxDistance = 3;
+    private int sitemapMaxUrls = 50000;
+    private int sitemapMaxSizeKb = 51200;
+    private int fetchThreads = 64;
+    private int maxConnectionsTotal = 200;
+    private int maxConnectionsPerHost = 4;
+    private int connectTimeoutMs = 10000;
+    private int readTimeoutMs = 10000;
+    private int maxBodySizeKb = 5120;
+    private int parseThreads;
+    private int lemmaThreads;
+    private int persistThreads = 2;
+    private int stageQueueCapacity = 256;
+    private int persistBatchSize = 50;
+    private int persistFlushMs = 200;
+    private int lemmaFlushMs = 1000;
+    private int frontierCheckpointMs = 5000;
+    private int pageQueueThreads = 4;
+    private int pageQueueCapacity = 10000;
 }
\ No newline at end of file
@@ -0,0 +1,24 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "search")
+public class SearchConfig {
+    /**
+     * Лемма, встречающаяся на большей доле страниц сайта, не участвует в отборе страниц.
+     */
+    private double maxLemmaPageShare = 0.8;
+    /**
+     * Если самая редкая лемма запроса встречается на большем числе страниц сайта, проверяется
+     * только столько её страниц, а число результатов оценивается пропорционально. 0 — всегда точно.
+     */
+    private int approximateAbove;
+    private int cacheMaxSizeKb = 65536;
+    private int cacheTtlSeconds = 300;
+}
@@ -3,24 +3,44 @@ package searchengine.controllers;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
+import searchengine.dto.indexing.CrawlerHostsResponse;
+import searchengine.dto.indexing.IndexPagesJobStatus;
+import searchengine.dto.indexing.IndexPagesRequest;
+import searchengine.dto.indexing.IndexPagesResponse;
+import searchengine.dto.indexing.PipelineStatsResponse;
+import searchengine.dto.search.SearchCacheResponse;
 import searchengine.dto.search.SearchRequest;
 import searchengine.dto.search.SearchResponse;
 import searchengine.dto.statistics.ResultResponse;
 import searchengine.dto.statistics.StatisticsResponse;
 import searchengine.exceptions.BadRequestException;
+import searchengine.services.CrawlPipeline;
+import searchengine.services.IndexingMode;
 import searchengine.services.IndexingService;
+import searchengine.services.PageIndexJob;
+import searchengine.services.PageIndexQueue;
+import searchengine.services.PolitenessScheduler;
+import searchengine.services.SearchResultCache;
 import searchengine.services.SearchService;
 import searchengine.services.StatisticsService;
 
+import java.util.List;
+
 @Slf4j
 @RestController
 @RequestMapping("/api")
 @RequiredArgsConstructor
 public class ApiController {
 
+    private static final int MAX_PAGES_PER_REQUEST = 1000;
+
     private final StatisticsService statisticsService;
     private final IndexingService indexingService;
     private final SearchService searchService;
+    private final PolitenessScheduler politenessScheduler;
+    private final CrawlPipeline crawlPipeline;
+    private final PageIndexQueue pageIndexQueue;
+    private final SearchResultCache searchResultCache;
 
     @GetMapping("/statistics")
     public StatisticsResponse statistics() {
@@ -28,8 +48,16 @@ public class ApiController {
     }
 
     @GetMapping("/startIndexing")
-    public ResultResponse startIndexing() {
-        if (!indexingService.startIndexing()) {
+    public ResultResponse startIndexing(
+            @RequestParam(required = false, defaultValue = "false") boolean incremental,
+            @RequestParam(required = false, defaultValue = "false") boolean resume) {
+        if (incremental && resume) {
+            throw new BadRequestException("Режимы incremental и resume нельзя указывать одновременно");
+        }
+        IndexingMode mode = resume ? IndexingMode.RESUME
+                : incremental ? IndexingMode.INCREMENTAL
+                : IndexingMode.FULL;
+        if (!indexingService.startIndexing(mode)) {
             throw new BadRequestException("Индексация уже запущена");
         }
         return new ResultResponse(true);
@@ -43,19 +71,71 @@ public class ApiController {
         return new ResultResponse(true);
     }
 
+    @GetMapping("/crawlerHosts")
+    public CrawlerHostsResponse crawlerHosts() {
+        CrawlerHostsResponse response = new CrawlerHostsResponse();
+        response.setResult(true);
+        response.setHosts(politenessScheduler.getHostStates());
+        return response;
+    }
+
+    @GetMapping("/pipeline")
+    public PipelineStatsResponse pipeline() {
+        PipelineStatsResponse response = new PipelineStatsResponse();
+        response.setResult(true);
+        response.setStages(crawlPipeline.getStageStats());
+        return response;
+    }
+
     @PostMapping("/indexPage")
     public ResultResponse indexPage(@RequestParam String url) {
         if (url == null || url.trim().isEmpty()) {
             throw new BadRequestException("Не указан URL страницы");
         }
 
-        String result = indexingService.indexSinglePage(url);
-        if (result != null) {
-            throw new BadRequestException(result);
+        IndexPagesJobStatus status = pageIndexQueue.submit(List.of(url)).toStatus();
+        if (!status.getErrors().isEmpty()) {
+            throw new BadRequestException(status.getErrors().values().iterator().next());
         }
         return new ResultResponse(true);
     }
 
+    @PostMapping("/indexPages")
+    public IndexPagesResponse indexPages(@RequestBody IndexPagesRequest request) {
+        List<String> urls = request.getUrls();
+        if (urls == null || urls.isEmpty()) {
+            throw new BadRequestException("Не указаны URL страниц");
+        }
+        if (urls.size() > MAX_PAGES_PER_REQUEST) {
+            throw new BadRequestException("Слишком много страниц в одном запросе, максимум " + MAX_PAGES_PER_REQUEST);
+        }
+        if (urls.stream().anyMatch(url -> url == null || url.trim().isEmpty())) {
+            throw new BadRequestException("Список содержит пустой URL");
+        }
+        return indexPagesResponse(pageIndexQueue.submit(urls));
+    }
+
+    @GetMapping("/indexPages/{jobId}")
+    public IndexPagesResponse indexPagesJob(@PathVariable String jobId) {
+        return indexPagesResponse(pageIndexQueue.getJob(jobId)
+                .orElseThrow(() -> new BadRequestException("Задание не найдено: " + jobId)));
+    }
+
+    private IndexPagesResponse indexPagesResponse(PageIndexJob job) {
+        IndexPagesResponse response = new IndexPagesResponse();
+        response.setResult(true);
+        response.setJob(job.toStatus());
+        return response;
+    }
+
+    @GetMapping("/searchCache")
+    public SearchCacheResponse searchCache() {
+        SearchCacheResponse response = new SearchCacheResponse();
+        response.setResult(true);
+        response.setStats(searchResultCache.getStats());
+        return response;
+    }
+
     @GetMapping("/search")
     public SearchResponse search(
             @RequestParam String query,
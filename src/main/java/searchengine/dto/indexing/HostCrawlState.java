@@ -0,0 +1,19 @@
+package searchengine.dto.indexing;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HostCrawlState {
+    private String host;
+    private long nextFetchTime;
+    private int queueDepth;
+    private int concurrencyLimit;
+    private long delayMs;
+    private long avgLatencyMs;
+    private double errorRate;
+    private long backoffUntil;
+}
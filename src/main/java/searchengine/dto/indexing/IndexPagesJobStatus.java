@@ -0,0 +1,21 @@
+package searchengine.dto.indexing;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IndexPagesJobStatus {
+    private String id;
+    private boolean done;
+    private int total;
+    private int pending;
+    private int coalesced;
+    private int indexed;
+    private int failed;
+    private Map<String, String> errors;
+}
@@ -0,0 +1,9 @@
+package searchengine.dto.indexing;
+
+import lombok.Data;
+
+@Data
+public class IndexPagesResponse {
+    private boolean result;
+    private IndexPagesJobStatus job;
+}
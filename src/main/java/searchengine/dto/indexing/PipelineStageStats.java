@@ -0,0 +1,19 @@
+package searchengine.dto.indexing;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PipelineStageStats {
+    private String stage;
+    private int workers;
+    private int queueSize;
+    private int queueCapacity;
+    private long processed;
+    private long failed;
+    private double throughputPerSecond;
+    private double utilization;
+}
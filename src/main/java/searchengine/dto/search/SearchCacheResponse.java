@@ -0,0 +1,9 @@
+package searchengine.dto.search;
+
+import lombok.Data;
+
+@Data
+public class SearchCacheResponse {
+    private boolean result;
+    private SearchCacheStats stats;
+}
@@ -10,6 +10,11 @@ import java.util.List;
 @NoArgsConstructor
 public class SearchResponse extends ResultResponse {
     private int count;
+    /**
+     * {@code count} и {@code facets} оценены по выборке страниц, а не подсчитаны точно.
+     */
+    private boolean approximate;
+    private List<SiteFacet> facets;
     private List<SearchResult> data;
 
     public SearchResponse(boolean result) {
@@ -39,4 +44,18 @@ public class SearchResponse extends ResultResponse {
             this.relevance = relevance;
         }
     }
-}
\ No newline at end of file
+
+    @Data
+    @NoArgsConstructor
+    public static class SiteFacet {
+        private String site;
+        private String siteName;
+        private int count;
+
+        public SiteFacet(String site, String siteName, int count) {
+            this.site = site;
+            this.siteName = siteName;
+            this.count = count;
+        }
+    }
+}
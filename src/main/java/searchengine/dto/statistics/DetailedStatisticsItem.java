@@ -10,5 +10,6 @@ public class DetailedStatisticsItem {
     private long statusTime;
     private String error;
     private int pages;
+    private int duplicates;
     private int lemmas;
 }
@@ -6,6 +6,7 @@ import lombok.Data;
 public class TotalStatistics {
     private int sites;
     private int pages;
+    private int duplicates;
     private int lemmas;
     private boolean indexing;
 }
@@ -0,0 +1,7 @@
+package searchengine.models;
+
+public enum CrawlQueueStatus {
+    PENDING,
+    DONE,
+    FAILED
+}
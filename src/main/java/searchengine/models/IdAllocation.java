@@ -0,0 +1,15 @@
+package searchengine.models;
+
+/**
+ * Идентификаторы выдаются последовательностями блоками по {@link #SIZE}
+ * (оптимизатор pooled-lo): значение последовательности — начало блока.
+ * Так Hibernate может пакетировать вставки, а пакетный SQL в
+ * {@code BulkIndexRepository} резервирует блоки той же последовательности.
+ */
+public final class IdAllocation {
+
+    public static final int SIZE = 50;
+
+    private IdAllocation() {
+    }
+}
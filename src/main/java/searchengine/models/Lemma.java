@@ -13,7 +13,8 @@ import javax.persistence.*;
 @Setter
 public class Lemma {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "lemma_seq")
+    @SequenceGenerator(name = "lemma_seq", sequenceName = "lemma_seq", allocationSize = IdAllocation.SIZE)
     private int id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -23,6 +24,9 @@ public class Lemma {
     @Column(name = "lemma", nullable = false)
     private String lemma;
 
+    /**
+     * Число страниц сайта, на которых встречается лемма.
+     */
     @Column(name = "frequency", nullable = false)
     private int frequency;
 }
\ No newline at end of file
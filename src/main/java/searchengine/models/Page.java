@@ -15,7 +15,8 @@ import java.util.Objects;
 public class Page {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "page_seq")
+    @SequenceGenerator(name = "page_seq", sequenceName = "page_seq", allocationSize = IdAllocation.SIZE)
     private int id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -31,6 +32,30 @@ public class Page {
     @Column(name = "content", nullable = false, columnDefinition = "MEDIUMTEXT")
     private String content;
 
+    @Column(name = "title", columnDefinition = "TEXT")
+    private String title;
+
+    @Column(name = "text_content", columnDefinition = "TEXT")
+    private String textContent;
+
+    @Column(name = "etag")
+    private String etag;
+
+    @Column(name = "last_modified", length = 64)
+    private String lastModified;
+
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    @Column(name = "simhash")
+    private Long simhash;
+
+    /**
+     * Путь страницы, почти-дубликатом которой является эта; такая страница не индексируется.
+     */
+    @Column(name = "canonical_path", columnDefinition = "TEXT")
+    private String canonicalPath;
+
     public Page() {
     }
 
@@ -12,7 +12,8 @@ import javax.persistence.*;
 public class SearchIndex {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "search_index_seq")
+    @SequenceGenerator(name = "search_index_seq", sequenceName = "search_index_seq", allocationSize = IdAllocation.SIZE)
     private int id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -15,7 +15,8 @@ import java.util.List;
 public class SiteEntity {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "site_seq")
+    @SequenceGenerator(name = "site_seq", sequenceName = "site_seq", allocationSize = IdAllocation.SIZE)
     private int id;
 
     @Enumerated(EnumType.STRING)
@@ -34,6 +35,16 @@ public class SiteEntity {
     @Column(name = "name", nullable = false, length = 255)
     private String name;
 
+    /**
+     * Поколение, по которому идёт поиск. Полная индексация строит новое поколение
+     * отдельной строкой с {@code active = false} и включает его только по завершении.
+     */
+    @Column(name = "active", nullable = false)
+    private boolean active = true;
+
+    @Column(name = "generation", nullable = false)
+    private int generation = 1;
+
     @OneToMany(mappedBy = "site", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Page> pages = new ArrayList<>();
 
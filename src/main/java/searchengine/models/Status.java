@@ -3,5 +3,9 @@ package searchengine.models;
 public enum Status {
     INDEXING,
     INDEXED,
-    FAILED
+    FAILED,
+    /**
+     * Поколение сайта снято с поиска или брошено недостроенным и ждёт удаления.
+     */
+    DISCARDED
 }
@@ -0,0 +1,192 @@
+package searchengine.repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import searchengine.models.IdAllocation;
+
+import java.sql.PreparedStatement;
+import java.util.*;
+
+/**
+ * Пакетная запись лемм и индекса одним SQL-запросом на таблицу.
+ * Массивы передаются в PostgreSQL целиком и разворачиваются через {@code unnest},
+ * поэтому число обращений к БД не зависит от размера словаря страницы.
+ * Идентификаторы берутся блоками из тех же последовательностей, что и у Hibernate
+ * (см. {@link IdAllocation}).
+ */
+@Repository
+@RequiredArgsConstructor
+public class BulkIndexRepository {
+
+    private static final String FIND_OR_INSERT_LEMMAS_SQL = """
+            WITH blocks AS (
+                SELECT b.n, nextval('lemma_seq') AS lo FROM generate_series(0, ?) AS b(n)
+            )
+            INSERT INTO lemma (id, site_id, lemma, frequency)
+            SELECT blocks.lo + (l.n - 1) %% %1$d, ?, l.lemma, 0
+            FROM (SELECT u.lemma, row_number() OVER (ORDER BY u.lemma) AS n
+                  FROM unnest(?::text[]) AS u(lemma)) AS l
+            JOIN blocks ON blocks.n = (l.n - 1) / %1$d
+            ORDER BY l.lemma
+            ON CONFLICT (site_id, lemma) DO NOTHING
+            RETURNING id, lemma""".formatted(IdAllocation.SIZE);
+
+    private static final String FIND_LEMMAS_SQL = """
+            SELECT id, lemma FROM lemma WHERE site_id = ? AND lemma = ANY(?::text[])""";
+
+    private static final String ADD_FREQUENCIES_SQL = """
+            UPDATE lemma SET frequency = lemma.frequency + d.delta
+            FROM (SELECT * FROM unnest(?::int[], ?::int[]) AS u(id, delta) ORDER BY u.id) AS d
+            WHERE lemma.id = d.id""";
+
+    private static final String INSERT_INDEXES_SQL = """
+            WITH blocks AS (
+                SELECT b.n, nextval('search_index_seq') AS lo FROM generate_series(0, ?) AS b(n)
+            )
+            INSERT INTO search_index (id, page_id, lemma_id, rank_index)
+            SELECT blocks.lo + (i.n - 1) %% %1$d, i.page_id, i.lemma_id, i.rank_index
+            FROM unnest(?::int[], ?::int[], ?::float8[]) WITH ORDINALITY AS i(page_id, lemma_id, rank_index, n)
+            JOIN blocks ON blocks.n = (i.n - 1) / %1$d""".formatted(IdAllocation.SIZE);
+
+    private static final String DELETE_INDEXES_SQL = """
+            DELETE FROM search_index WHERE page_id = ANY(?::int[])
+            RETURNING page_id, lemma_id, rank_index""";
+
+    private static final String DELETE_UNUSED_LEMMAS_SQL = """
+            DELETE FROM lemma
+            WHERE site_id = ? AND frequency <= 0
+              AND NOT EXISTS (SELECT 1 FROM search_index i WHERE i.lemma_id = lemma.id)""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Возвращает идентификаторы лемм сайта, создавая отсутствующие с нулевой частотой.
+     * Уже существующие леммы вставка пропускает без блокировки и перезаписи строк,
+     * их id читаются вторым запросом — он видит и строки, вставленные параллельно.
+     */
+    public Map<String, Integer> findOrInsertLemmas(int siteId, Collection<String> lemmas) {
+        Map<String, Integer> ids = new HashMap<>(lemmas.size() * 2);
+        if (lemmas.isEmpty()) {
+            return ids;
+        }
+
+        String[] values = lemmas.toArray(new String[0]);
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(FIND_OR_INSERT_LEMMAS_SQL);
+            statement.setInt(1, lastBlock(values.length));
+            statement.setInt(2, siteId);
+            statement.setArray(3, connection.createArrayOf("text", values));
+            return statement;
+        }, rs -> {
+            ids.put(rs.getString("lemma"), rs.getInt("id"));
+        });
+        if (ids.size() == values.length) {
+            return ids;
+        }
+
+        String[] existing = Arrays.stream(values).filter(lemma -> !ids.containsKey(lemma)).toArray(String[]::new);
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(FIND_LEMMAS_SQL);
+            statement.setInt(1, siteId);
+            statement.setArray(2, connection.createArrayOf("text", existing));
+            return statement;
+        }, rs -> {
+            ids.put(rs.getString("lemma"), rs.getInt("id"));
+        });
+        return ids;
+    }
+
+    /**
+     * Прибавляет накопленные приращения к частотам лемм.
+     */
+    public void addFrequencies(Map<Integer, Integer> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        Integer[] lemmaIds = new Integer[deltas.size()];
+        Integer[] values = new Integer[deltas.size()];
+        int i = 0;
+        for (Map.Entry<Integer, Integer> entry : deltas.entrySet()) {
+            lemmaIds[i] = entry.getKey();
+            values[i] = entry.getValue();
+            i++;
+        }
+
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(ADD_FREQUENCIES_SQL);
+            statement.setArray(1, connection.createArrayOf("int4", lemmaIds));
+            statement.setArray(2, connection.createArrayOf("int4", values));
+            return statement;
+        });
+    }
+
+    /**
+     * Удаляет индекс страниц и возвращает удалённые строки: «id страницы → (id леммы → ранг)».
+     * По ним вычитаются частоты лемм при переиндексации и удалении страниц.
+     */
+    public Map<Integer, Map<Integer, Integer>> deleteIndexes(Collection<Integer> pageIds) {
+        Map<Integer, Map<Integer, Integer>> removed = new HashMap<>();
+        if (pageIds.isEmpty()) {
+            return removed;
+        }
+
+        Integer[] values = pageIds.toArray(new Integer[0]);
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(DELETE_INDEXES_SQL);
+            statement.setArray(1, connection.createArrayOf("int4", values));
+            return statement;
+        }, rs -> {
+            removed.computeIfAbsent(rs.getInt("page_id"), id -> new HashMap<>())
+                    .put(rs.getInt("lemma_id"), Math.round(rs.getFloat("rank_index")));
+        });
+        return removed;
+    }
+
+    /**
+     * Удаляет леммы сайта, которые после инкрементальной переиндексации больше не встречаются.
+     */
+    public int deleteUnusedLemmas(int siteId) {
+        return jdbcTemplate.update(DELETE_UNUSED_LEMMAS_SQL, siteId);
+    }
+
+    /**
+     * Вставляет индекс всей пачки страниц одним запросом: «id страницы → (id леммы → ранг)».
+     */
+    public void insertIndexes(Map<Integer, Map<Integer, Float>> ranksByPage) {
+        int rows = 0;
+        for (Map<Integer, Float> ranks : ranksByPage.values()) {
+            rows += ranks.size();
+        }
+        if (rows == 0) {
+            return;
+        }
+
+        Integer[] pageIds = new Integer[rows];
+        Integer[] lemmaIds = new Integer[rows];
+        Double[] rankValues = new Double[rows];
+        int i = 0;
+        for (Map.Entry<Integer, Map<Integer, Float>> page : ranksByPage.entrySet()) {
+            for (Map.Entry<Integer, Float> entry : page.getValue().entrySet()) {
+                pageIds[i] = page.getKey();
+                lemmaIds[i] = entry.getKey();
+                rankValues[i] = entry.getValue().doubleValue();
+                i++;
+            }
+        }
+
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(INSERT_INDEXES_SQL);
+            statement.setInt(1, lastBlock(pageIds.length));
+            statement.setArray(2, connection.createArrayOf("int4", pageIds));
+            statement.setArray(3, connection.createArrayOf("int4", lemmaIds));
+            statement.setArray(4, connection.createArrayOf("float8", rankValues));
+            return statement;
+        });
+    }
+
+    private static int lastBlock(int rows) {
+        return (rows - 1) / IdAllocation.SIZE;
+    }
+}
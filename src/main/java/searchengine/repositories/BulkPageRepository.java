@@ -0,0 +1,135 @@
+package searchengine.repositories;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import searchengine.models.IdAllocation;
+
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Пакетная запись страниц: одна вставка с {@code ON CONFLICT (site_id, path)}
+ * на всю пачку вместо поиска и сохранения каждой страницы по отдельности.
+ */
+@Repository
+@RequiredArgsConstructor
+public class BulkPageRepository {
+
+    private static final String UPSERT_PAGES_SQL = """
+            WITH blocks AS (
+                SELECT b.n, nextval('page_seq') AS lo FROM generate_series(0, ?) AS b(n)
+            )
+            INSERT INTO page (id, site_id, path, code, content, title, text_content, etag, last_modified, content_hash,
+                              simhash, canonical_path)
+            SELECT blocks.lo + (p.n - 1) %% %1$d, p.site_id, p.path, p.code, p.content, p.title, p.text_content,
+                   p.etag, p.last_modified, p.content_hash, p.simhash, p.canonical_path
+            FROM unnest(?::int[], ?::text[], ?::int[], ?::text[], ?::text[], ?::text[], ?::text[], ?::text[], ?::text[],
+                        ?::int8[], ?::text[])
+                 WITH ORDINALITY AS p(site_id, path, code, content, title, text_content, etag, last_modified,
+                                      content_hash, simhash, canonical_path, n)
+            JOIN blocks ON blocks.n = (p.n - 1) / %1$d
+            ORDER BY p.site_id, p.path
+            ON CONFLICT (site_id, path) DO UPDATE SET code = excluded.code, content = excluded.content,
+                title = excluded.title, text_content = excluded.text_content, etag = excluded.etag,
+                last_modified = excluded.last_modified, content_hash = excluded.content_hash,
+                simhash = excluded.simhash, canonical_path = excluded.canonical_path
+            RETURNING id, site_id, path""".formatted(IdAllocation.SIZE);
+
+    private static final String FIND_PAGE_STATES_SQL = """
+            SELECT id, path, code, etag, last_modified, content_hash, simhash, canonical_path
+            FROM page WHERE site_id = ?""";
+
+    /**
+     * Вместе со страницами снимает отметку дубликата с их копий и сбрасывает им хэш содержимого:
+     * при следующем инкрементальном обходе копии будут проиндексированы заново.
+     */
+    private static final String DELETE_PAGES_SQL = """
+            WITH removed AS (
+                DELETE FROM page WHERE id = ANY(?::int[]) RETURNING site_id, path
+            )
+            UPDATE page SET canonical_path = NULL, content_hash = NULL
+            FROM removed
+            WHERE page.site_id = removed.site_id AND page.canonical_path = removed.path""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Вставляет или обновляет страницы и передаёт их идентификаторы в {@code idConsumer}.
+     * Пара (сайт, путь) не должна повторяться внутри пачки.
+     */
+    public void upsertPages(List<Integer> siteIds, List<String> paths, List<Integer> codes, List<String> contents,
+                            List<String> titles, List<String> texts, List<String> etags, List<String> lastModified,
+                            List<String> contentHashes, List<Long> simhashes, List<String> canonicalPaths,
+                            PageIdConsumer idConsumer) {
+        if (paths.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(UPSERT_PAGES_SQL);
+            statement.setInt(1, (paths.size() - 1) / IdAllocation.SIZE);
+            statement.setArray(2, connection.createArrayOf("int4", siteIds.toArray()));
+            statement.setArray(3, connection.createArrayOf("text", paths.toArray()));
+            statement.setArray(4, connection.createArrayOf("int4", codes.toArray()));
+            statement.setArray(5, connection.createArrayOf("text", contents.toArray()));
+            statement.setArray(6, connection.createArrayOf("text", titles.toArray()));
+            statement.setArray(7, connection.createArrayOf("text", texts.toArray()));
+            statement.setArray(8, connection.createArrayOf("text", etags.toArray()));
+            statement.setArray(9, connection.createArrayOf("text", lastModified.toArray()));
+            statement.setArray(10, connection.createArrayOf("text", contentHashes.toArray()));
+            statement.setArray(11, connection.createArrayOf("int8", simhashes.toArray()));
+            statement.setArray(12, connection.createArrayOf("text", canonicalPaths.toArray()));
+            return statement;
+        }, rs -> {
+            idConsumer.accept(rs.getInt("site_id"), rs.getString("path"), rs.getInt("id"));
+        });
+    }
+
+    /**
+     * Состояние уже сохранённых страниц сайта для инкрементальной переиндексации, без содержимого.
+     */
+    public Map<String, PageState> findPageStates(int siteId) {
+        Map<String, PageState> states = new HashMap<>();
+        jdbcTemplate.query(FIND_PAGE_STATES_SQL, rs -> {
+            states.put(rs.getString("path"), new PageState(rs.getInt("id"), rs.getInt("code"),
+                    rs.getString("etag"), rs.getString("last_modified"), rs.getString("content_hash"),
+                    rs.getObject("simhash", Long.class), rs.getString("canonical_path")));
+        }, siteId);
+        return states;
+    }
+
+    public void deletePages(Collection<Integer> pageIds) {
+        if (pageIds.isEmpty()) {
+            return;
+        }
+
+        Integer[] values = pageIds.toArray(new Integer[0]);
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(DELETE_PAGES_SQL);
+            statement.setArray(1, connection.createArrayOf("int4", values));
+            return statement;
+        });
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class PageState {
+        private final int id;
+        private final int code;
+        private final String etag;
+        private final String lastModified;
+        private final String contentHash;
+        private final Long simhash;
+        private final String canonicalPath;
+    }
+
+    @FunctionalInterface
+    public interface PageIdConsumer {
+        void accept(int siteId, String path, int pageId);
+    }
+}
@@ -0,0 +1,73 @@
+package searchengine.repositories;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import searchengine.models.CrawlQueueStatus;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Сохранённая очередь обхода (frontier): обнаруженные, обработанные и неудачные пути сайта.
+ * Статус PENDING не перезаписывает уже завершённый путь.
+ */
+@Repository
+@RequiredArgsConstructor
+public class CrawlQueueRepository {
+
+    private static final String SAVE_SQL = """
+            INSERT INTO crawl_queue (site_id, path, status, depth)
+            SELECT q.site_id, q.path, q.status, q.depth
+            FROM unnest(?::int[], ?::text[], ?::text[], ?::int[]) AS q(site_id, path, status, depth)
+            ORDER BY q.site_id, q.path
+            ON CONFLICT (site_id, path) DO UPDATE SET status = excluded.status
+            WHERE excluded.status <> 'PENDING'""";
+
+    private static final String FIND_BY_SITE_SQL = "SELECT path, status, depth FROM crawl_queue WHERE site_id = ?";
+
+    private static final String DELETE_BY_SITE_SQL = "DELETE FROM crawl_queue WHERE site_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Сохраняет пачку записей. Пара (сайт, путь) не должна повторяться внутри пачки.
+     */
+    public void save(List<Integer> siteIds, List<String> paths, List<String> statuses, List<Integer> depths) {
+        if (paths.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SAVE_SQL);
+            statement.setArray(1, connection.createArrayOf("int4", siteIds.toArray()));
+            statement.setArray(2, connection.createArrayOf("text", paths.toArray()));
+            statement.setArray(3, connection.createArrayOf("text", statuses.toArray()));
+            statement.setArray(4, connection.createArrayOf("int4", depths.toArray()));
+            return statement;
+        });
+    }
+
+    public List<QueuedPath> findBySiteId(int siteId) {
+        List<QueuedPath> queue = new ArrayList<>();
+        jdbcTemplate.query(FIND_BY_SITE_SQL, rs -> {
+            queue.add(new QueuedPath(rs.getString("path"),
+                    CrawlQueueStatus.valueOf(rs.getString("status")), rs.getInt("depth")));
+        }, siteId);
+        return queue;
+    }
+
+    public void deleteBySiteId(int siteId) {
+        jdbcTemplate.update(DELETE_BY_SITE_SQL, siteId);
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class QueuedPath {
+        private final String path;
+        private final CrawlQueueStatus status;
+        private final int depth;
+    }
+}
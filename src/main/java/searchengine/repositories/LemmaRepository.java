@@ -8,7 +8,6 @@ import searchengine.models.Lemma;
 
 import java.util.List;
 import java.util.Optional;
-import java.util.Set;
 
 public interface LemmaRepository extends JpaRepository<Lemma, Integer> {
 
@@ -21,12 +20,9 @@ public interface LemmaRepository extends JpaRepository<Lemma, Integer> {
     @Query("DELETE FROM Lemma l WHERE l.site.id = :siteId")
     void deleteBySiteId(@Param("siteId") int siteId);
 
-    @Query("SELECT l FROM Lemma l WHERE l.lemma IN :lemmas")
+    @Query("SELECT l FROM Lemma l WHERE l.lemma IN :lemmas AND l.site.active = true")
     List<Lemma> findByLemmas(@Param("lemmas") List<String> lemmas);
 
     @Query("SELECT l FROM Lemma l WHERE l.lemma IN :lemmas AND l.site.id = :siteId")
     List<Lemma> findByLemmasAndSite(@Param("lemmas") List<String> lemmas, @Param("siteId") int siteId);
-
-    @Query("SELECT i.page.id FROM SearchIndex i WHERE i.lemma.id = :lemmaId")
-    Set<Integer> findPageIdsByLemmaId(@Param("lemmaId") int lemmaId);
 }
\ No newline at end of file
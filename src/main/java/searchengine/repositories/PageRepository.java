@@ -16,14 +16,42 @@ public interface PageRepository extends JpaRepository<Page, Integer> {
     @Query("SELECT p FROM Page p WHERE p.site.id = :siteId AND p.path = :path")
     Optional<Page> findBySiteIdAndPath(@Param("siteId") int siteId, @Param("path") String path);
 
+    @Query("SELECT count(p) > 0 FROM Page p WHERE p.site.id = :siteId AND p.path = :path")
+    boolean existsBySiteIdAndPath(@Param("siteId") int siteId, @Param("path") String path);
+
     int countBySiteId(int siteId);
 
+    /**
+     * Страницы сайта, которые попадают в индекс: успешно загруженные и не дубликаты.
+     */
+    @Query("SELECT count(p) FROM Page p WHERE p.site.id = :siteId AND p.code = 200 AND p.canonicalPath IS NULL")
+    int countIndexableBySiteId(@Param("siteId") int siteId);
+
+    @Query("SELECT count(p) FROM Page p WHERE p.site.id = :siteId AND p.canonicalPath IS NOT NULL")
+    int countDuplicatesBySiteId(@Param("siteId") int siteId);
+
     @Query("SELECT p FROM Page p WHERE p.site.id = :siteId")
     List<Page> findBySiteId(@Param("siteId") int siteId);
 
     void deleteAllBySite(SiteEntity site);
 
-    @Query("SELECT p FROM Page p WHERE p.id IN :pageIds")
-    List<Page> findByIdIn(@Param("pageIds") List<Integer> pageIds);
+    @Query("SELECT p.content FROM Page p WHERE p.id = :pageId")
+    String findContentById(@Param("pageId") int pageId);
+
+    @Query("SELECT p.id AS id, p.path AS path, p.title AS title, p.textContent AS textContent " +
+            "FROM Page p WHERE p.id IN :pageIds")
+    List<PageSummary> findSummariesByIdIn(@Param("pageIds") List<Integer> pageIds);
+
+    /**
+     * Всё, что нужно выдаче поиска, без исходного HTML страницы.
+     */
+    interface PageSummary {
+        int getId();
+
+        String getPath();
+
+        String getTitle();
 
+        String getTextContent();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,127 @@
+package searchengine.repositories;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Отбор страниц по леммам запроса внутри PostgreSQL. Кандидаты — страницы самой редкой
+ * леммы каждого сайта; страница подходит, если у неё есть все леммы запроса своего сайта.
+ * Сортировка по рангу и окно выдачи тоже применяются в БД: клиенту возвращаются только
+ * страницы окна, а число подошедших страниц и максимальный ранг — по строке на сайт
+ * из того же запроса. Число кандидатов сайта можно ограничить — тогда проверяется
+ * только их выборка.
+ */
+@Repository
+@RequiredArgsConstructor
+public class SearchQueryRepository {
+
+    private static final String FIND_MATCHES_SQL = """
+            WITH q AS (
+                SELECT * FROM unnest(?::int[], ?::int[], ?::int[]) AS q(lemma_id, site_id, required)
+            ),
+            candidates AS (
+                SELECT c.page_id
+                FROM unnest(?::int[]) AS r(lemma_id)
+                CROSS JOIN LATERAL (
+                    SELECT page_id FROM search_index s WHERE s.lemma_id = r.lemma_id LIMIT ?
+                ) AS c
+            ),
+            matches AS (
+                SELECT i.page_id, max(q.site_id) AS site_id, sum(i.rank_index) AS rank
+                FROM search_index i
+                JOIN q ON q.lemma_id = i.lemma_id
+                WHERE i.page_id IN (SELECT page_id FROM candidates)
+                GROUP BY i.page_id
+                HAVING count(*) = max(q.required)
+            )
+            (SELECT page_id, site_id, rank, NULL::bigint AS hits
+             FROM matches
+             ORDER BY rank DESC, page_id
+             LIMIT ? OFFSET ?)
+            UNION ALL
+            SELECT NULL, site_id, max(rank), count(*)
+            FROM matches
+            GROUP BY site_id
+            ORDER BY hits NULLS FIRST, rank DESC, page_id""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Страницы, содержащие все леммы запроса, с суммой рангов этих лемм: окно выдачи
+     * в порядке убывания ранга (при равном ранге — по id страницы) и итоги по сайтам.
+     *
+     * @param lemmaIdsBySite    id лемм запроса по сайтам, первой — самая редкая
+     * @param candidatesPerSite сколько страниц самой редкой леммы проверять, {@code null} — все
+     */
+    public Matches findMatches(Map<Integer, List<Integer>> lemmaIdsBySite, Integer candidatesPerSite,
+                               int offset, int limit) {
+        Matches matches = new Matches();
+        if (lemmaIdsBySite.isEmpty()) {
+            return matches;
+        }
+
+        List<Integer> lemmaIds = new ArrayList<>();
+        List<Integer> siteIds = new ArrayList<>();
+        List<Integer> required = new ArrayList<>();
+        List<Integer> rarest = new ArrayList<>(lemmaIdsBySite.size());
+        lemmaIdsBySite.forEach((siteId, ids) -> {
+            rarest.add(ids.get(0));
+            for (int lemmaId : ids) {
+                lemmaIds.add(lemmaId);
+                siteIds.add(siteId);
+                required.add(ids.size());
+            }
+        });
+
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(FIND_MATCHES_SQL);
+            statement.setArray(1, connection.createArrayOf("int4", lemmaIds.toArray()));
+            statement.setArray(2, connection.createArrayOf("int4", siteIds.toArray()));
+            statement.setArray(3, connection.createArrayOf("int4", required.toArray()));
+            statement.setArray(4, connection.createArrayOf("int4", rarest.toArray()));
+            if (candidatesPerSite != null) {
+                statement.setInt(5, candidatesPerSite);
+            } else {
+                statement.setNull(5, Types.INTEGER);
+            }
+            statement.setInt(6, Math.max(limit, 0));
+            statement.setInt(7, Math.max(offset, 0));
+            return statement;
+        }, rs -> {
+            int siteId = rs.getInt("site_id");
+            float rank = rs.getFloat("rank");
+            long hits = rs.getLong("hits");
+            if (rs.wasNull()) {
+                matches.window.add(new PageMatch(rs.getInt("page_id"), siteId, rank));
+            } else {
+                matches.countBySite.put(siteId, (int) hits);
+                matches.maxRank = Math.max(matches.maxRank, rank);
+            }
+        });
+        return matches;
+    }
+
+    @Getter
+    public static class Matches {
+        private final List<PageMatch> window = new ArrayList<>();
+        private final Map<Integer, Integer> countBySite = new HashMap<>();
+        private float maxRank;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class PageMatch {
+        private final int pageId;
+        private final int siteId;
+        private final float rank;
+    }
+}
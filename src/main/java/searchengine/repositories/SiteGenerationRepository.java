@@ -0,0 +1,68 @@
+package searchengine.repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Переключение и удаление поколений индекса сайта. Поколение — отдельная строка
+ * {@code site} со своими страницами, леммами и индексом.
+ */
+@Repository
+@RequiredArgsConstructor
+public class SiteGenerationRepository {
+
+    private static final String DEACTIVATE_SQL = """
+            UPDATE site SET active = false, status = 'DISCARDED'
+            WHERE url = ? AND active AND id <> ?
+            RETURNING id""";
+
+    private static final String DISCARD_SQL = "UPDATE site SET status = 'DISCARDED' WHERE id = ? AND NOT active";
+
+    private static final String ACTIVATE_SQL = """
+            UPDATE site SET active = true, status = 'INDEXED', status_time = ?, last_error = NULL
+            WHERE id = ?""";
+
+    // Индекс страниц удаляется каскадом
+    private static final String DELETE_PAGES_SQL = """
+            DELETE FROM page
+            WHERE id IN (SELECT id FROM page WHERE site_id = ? LIMIT ?)""";
+
+    // Леммы и сохранённая очередь обхода удаляются каскадом
+    private static final String DELETE_SITE_SQL = "DELETE FROM site WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Снимает с поиска текущее поколение сайта {@code url} (кроме {@code siteId})
+     * и возвращает id снятых строк. Вызывается в одной транзакции с {@link #activate}.
+     */
+    public List<Integer> deactivateOthers(String url, int siteId) {
+        return jdbcTemplate.queryForList(DEACTIVATE_SQL, Integer.class, url, siteId);
+    }
+
+    /**
+     * Помечает неактивное поколение к удалению: оно больше не считается недостроенным.
+     */
+    public void discard(int siteId) {
+        jdbcTemplate.update(DISCARD_SQL, siteId);
+    }
+
+    public void activate(int siteId, LocalDateTime statusTime) {
+        jdbcTemplate.update(ACTIVATE_SQL, statusTime, siteId);
+    }
+
+    /**
+     * Удаляет до {@code limit} страниц сайта вместе с их индексом и возвращает число удалённых.
+     */
+    public int deletePages(int siteId, int limit) {
+        return jdbcTemplate.update(DELETE_PAGES_SQL, siteId, limit);
+    }
+
+    public void deleteSite(int siteId) {
+        jdbcTemplate.update(DELETE_SITE_SQL, siteId);
+    }
+}
@@ -1,11 +1,30 @@
 package searchengine.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import searchengine.models.SiteEntity;
+import searchengine.models.Status;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface SiteRepository extends JpaRepository<SiteEntity, Integer> {
-    Optional<SiteEntity> findByUrl(String url);
 
-}
\ No newline at end of file
+    Optional<SiteEntity> findByUrlAndActiveTrue(String url);
+
+    /**
+     * Недостроенное поколение сайта: ещё не включено и не завершено. Если таких
+     * несколько, берётся последнее.
+     */
+    default Optional<SiteEntity> findBuildingByUrl(String url) {
+        return findFirstByUrlAndActiveFalseAndStatusInOrderByGenerationDesc(url, List.of(Status.INDEXING, Status.FAILED));
+    }
+
+    Optional<SiteEntity> findFirstByUrlAndActiveFalseAndStatusInOrderByGenerationDesc(String url, List<Status> statuses);
+
+    @Query("SELECT coalesce(max(s.generation), 0) FROM SiteEntity s WHERE s.url = :url")
+    int findMaxGeneration(@Param("url") String url);
+
+    List<SiteEntity> findByActiveFalseAndStatusIn(List<Status> statuses);
+}
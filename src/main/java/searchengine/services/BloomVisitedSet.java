@@ -0,0 +1,127 @@
+package searchengine.services;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Масштабируемый фильтр Блума в памяти вне кучи. Когда текущий фильтр заполнен
+ * до расчётной ёмкости, добавляется следующий — вдвое больше и с вдвое меньшей
+ * долей ложных срабатываний, так что суммарная доля не превышает заданной.
+ * Проверка и добавление пути выполняются под блокировкой его полосы, поэтому
+ * один путь, добавляемый из нескольких потоков, считается новым ровно один раз.
+ * Биты выставляются атомарно: пути разных полос делят слова фильтра.
+ */
+public class BloomVisitedSet implements VisitedSet {
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+    private static final VarHandle WORDS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final int STRIPE_BITS = 6;
+
+    private final List<Filter> filters = new CopyOnWriteArrayList<>();
+    private final Object[] stripes = new Object[1 << STRIPE_BITS];
+    private final AtomicLong size = new AtomicLong();
+
+    public BloomVisitedSet(long expectedUrls, double falsePositiveRate) {
+        filters.add(new Filter(Math.max(1024, expectedUrls), falsePositiveRate / 2));
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    @Override
+    public boolean add(String path) {
+        ByteBuffer hash = ByteBuffer.wrap(HASH.hashString(path, StandardCharsets.UTF_8).asBytes())
+                .order(ByteOrder.LITTLE_ENDIAN);
+        long h1 = hash.getLong(0);
+        long h2 = hash.getLong(8);
+        Filter current;
+        synchronized (stripes[(int) (h1 >>> (Long.SIZE - STRIPE_BITS))]) {
+            for (Filter filter : filters) {
+                if (filter.mightContain(h1, h2)) {
+                    return false;
+                }
+            }
+            // Фильтр, заменённый при росте, тоже проверяется всеми, так что запись в него не теряется
+            current = filters.get(filters.size() - 1);
+            current.put(h1, h2);
+        }
+        size.incrementAndGet();
+        if (current.count.incrementAndGet() >= current.capacity) {
+            grow(current);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean contains(String path) {
+        ByteBuffer hash = ByteBuffer.wrap(HASH.hashString(path, StandardCharsets.UTF_8).asBytes())
+                .order(ByteOrder.LITTLE_ENDIAN);
+        long h1 = hash.getLong(0);
+        long h2 = hash.getLong(8);
+        for (Filter filter : filters) {
+            if (filter.mightContain(h1, h2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public long size() {
+        return size.get();
+    }
+
+    private synchronized void grow(Filter full) {
+        if (filters.get(filters.size() - 1) == full) {
+            filters.add(new Filter(full.capacity * 2, full.falsePositiveRate / 2));
+        }
+    }
+
+    private static class Filter {
+        // Прямой буфер адресуется int-смещением
+        private static final long MAX_BITS = (Integer.MAX_VALUE / 8) * 64L;
+
+        private final long capacity;
+        private final double falsePositiveRate;
+        private final long bits;
+        private final int hashes;
+        private final ByteBuffer words;
+        private final AtomicLong count = new AtomicLong();
+
+        Filter(long capacity, double falsePositiveRate) {
+            this.capacity = capacity;
+            this.falsePositiveRate = falsePositiveRate;
+            long optimalBits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            this.bits = Math.min((optimalBits + 63) / 64 * 64, MAX_BITS);
+            this.hashes = Math.max(1, (int) Math.round((double) bits / capacity * Math.log(2)));
+            this.words = ByteBuffer.allocateDirect((int) (bits / 8));
+        }
+
+        void put(long h1, long h2) {
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bits);
+                WORDS.getAndBitwiseOr(words, (int) (bit >>> 6) * 8, 1L << (bit & 63));
+            }
+        }
+
+        boolean mightContain(long h1, long h2) {
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bits);
+                long word = (long) WORDS.getVolatile(words, (int) (bit >>> 6) * 8);
+                if ((word & (1L << (bit & 63))) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
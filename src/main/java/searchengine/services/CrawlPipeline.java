@@ -0,0 +1,404 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerConfig;
+import searchengine.dto.indexing.PipelineStageStats;
+import searchengine.models.SiteEntity;
+import searchengine.repositories.BulkPageRepository.PageState;
+import searchengine.repositories.PageRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Конвейер индексации сайта: загрузка → разбор → лемматизация → запись в БД.
+ * Стадии связаны ограниченными очередями и имеют собственные пулы потоков,
+ * поэтому задержки БД не тормозят загрузку напрямую, а переполнение
+ * любой стадии притормаживает предыдущие.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CrawlPipeline {
+
+    private static final float ROOT_PRIORITY = 2f;
+    private static final float LINK_PRIORITY = 0f;
+
+    private final CrawlerConfig crawlerConfig;
+    private final PolitenessScheduler politenessScheduler;
+    private final PageFetcher pageFetcher;
+    private final LemmaProcessor lemmaProcessor;
+    private final PageWriter pageWriter;
+    private final PageRepository pageRepository;
+    private final FrontierStore frontierStore;
+    private final SiteSeeder siteSeeder;
+
+    private PipelineStage<PageWork> fetchStage;
+    private PipelineStage<PageWork> parseStage;
+    private PipelineStage<PageWork> lemmaStage;
+    private PipelineStage<PageWork> persistStage;
+
+    @PostConstruct
+    public void start() {
+        int capacity = crawlerConfig.getStageQueueCapacity();
+
+        fetchStage = PipelineStage.perItem("fetch", threads(crawlerConfig.getFetchThreads()), capacity, this::fetch);
+        parseStage = PipelineStage.perItem("parse", threads(crawlerConfig.getParseThreads()), capacity, this::parse);
+        lemmaStage = PipelineStage.perItem("lemmatize", threads(crawlerConfig.getLemmaThreads()), capacity, this::lemmatize);
+        persistStage = new PipelineStage<>("persist", threads(crawlerConfig.getPersistThreads()), capacity,
+                crawlerConfig.getPersistBatchSize(), crawlerConfig.getPersistFlushMs(), this::persist);
+
+        List.of(fetchStage, parseStage, lemmaStage, persistStage).forEach(PipelineStage::start);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        List.of(fetchStage, parseStage, lemmaStage, persistStage).forEach(PipelineStage::stop);
+    }
+
+    /**
+     * Запускает обход: сначала читаются robots.txt и sitemap, затем в очередь попадают
+     * главная страница и пути из sitemap с их приоритетами. Sitemap загружается до
+     * старта, чтобы обход не завершился раньше, чем очередь будет заполнена.
+     * Если robots.txt отвечает ошибкой сервера, обход завершается ошибкой, ничего не загрузив:
+     * сайт временно закрыт, и поколение с пустым обходом не должно заменить текущее.
+     */
+    public CompletableFuture<Void> crawl(SiteCrawl crawl) {
+        RobotsRules robots = siteSeeder.loadRobots(crawl);
+        if (robots.isUnavailable()) {
+            return CompletableFuture.failedFuture(
+                    new IOException("robots.txt сайта недоступен, обход отложен"));
+        }
+        crawl.setRobots(robots);
+        if (robots.getCrawlDelayMs() > 0) {
+            politenessScheduler.applyCrawlDelay(crawl.getHost(), robots.getCrawlDelayMs());
+        }
+
+        // Пока очередь заполняется, обход не должен завершиться из-за быстро обработанных первых страниц
+        crawl.getPending().incrementAndGet();
+        if (crawl.isResumed()) {
+            crawl.getResumePaths().forEach(queued ->
+                    discover(crawl, queued.getPath(), queued.getDepth(), LINK_PRIORITY));
+        } else {
+            List<SiteSeeder.SeedUrl> seeds = siteSeeder.loadSitemaps(crawl, robots.getSitemaps());
+            discover(crawl, "/", 0, ROOT_PRIORITY);
+            seeds.forEach(seed -> discover(crawl, seed.getPath(), 1, seed.getPriority()));
+        }
+        crawl.finishPage();
+        return crawl.getCompletion();
+    }
+
+    /**
+     * Сбрасывает пути, ещё не получившие слот загрузки, и отменяет запросы обхода,
+     * ждущие слота в планировщике. Страницы, уже попавшие в конвейер, дорабатываются до конца.
+     * Очередь сбрасывается ещё раз после отмены: {@link #discover} мог добавить путь,
+     * проверив остановку до её запроса.
+     */
+    public void stop(SiteCrawl crawl) {
+        dropWaiting(crawl);
+        politenessScheduler.cancel(crawl);
+        dropWaiting(crawl);
+    }
+
+    public List<PipelineStageStats> getStageStats() {
+        List<PipelineStageStats> stats = new ArrayList<>();
+        for (PipelineStage<PageWork> stage : List.of(fetchStage, parseStage, lemmaStage, persistStage)) {
+            stats.add(stage.getStats());
+        }
+        return stats;
+    }
+
+    private void discover(SiteCrawl crawl, String path, int depth, float priority) {
+        if (crawl.isStopped() || !UrlCanonicalizer.isHtmlPath(path)) {
+            return;
+        }
+        if (!crawl.getRobots().isAllowed(path)) {
+            if (crawl.getVisitedPaths().add(path)) {
+                log.trace("Путь запрещён robots.txt: {}", path);
+                crawl.getDisallowed().incrementAndGet();
+            }
+            return;
+        }
+        if (!crawl.markDiscovered(path, depth)) {
+            return;
+        }
+        frontierStore.discovered(crawl.getSite().getId(), path, depth);
+        crawl.getWaiting().add(crawl.newEntry(path, depth, priority));
+        drain(crawl);
+    }
+
+    private void drain(SiteCrawl crawl) {
+        if (crawl.isStopped()) {
+            dropWaiting(crawl);
+            return;
+        }
+        while (!crawl.getWaiting().isEmpty()) {
+            int current = crawl.getInFlight().get();
+            if (current >= politenessScheduler.concurrencyLimit(crawl.getHost())) {
+                return;
+            }
+            if (!crawl.getInFlight().compareAndSet(current, current + 1)) {
+                continue;
+            }
+            FrontierEntry entry = crawl.getWaiting().poll();
+            if (entry == null) {
+                crawl.getInFlight().decrementAndGet();
+                continue;
+            }
+            PageWork work = new PageWork(crawl, entry.getPath(), entry.getDepth());
+            politenessScheduler.schedule(crawl.getHost(), crawl, () -> dispatchFetch(work), () -> {
+                releaseSlot(crawl);
+                crawl.finishPage();
+            });
+        }
+    }
+
+    private void dropWaiting(SiteCrawl crawl) {
+        while (crawl.getWaiting().poll() != null) {
+            crawl.finishPage();
+        }
+    }
+
+    private void releaseSlot(SiteCrawl crawl) {
+        crawl.getInFlight().decrementAndGet();
+        drain(crawl);
+    }
+
+    private void dispatchFetch(PageWork work) {
+        try {
+            fetchStage.submit(work);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            releaseSlot(work.crawl);
+            work.crawl.finishPage();
+        }
+    }
+
+    private void submit(PipelineStage<PageWork> stage, PageWork work) {
+        try {
+            stage.submit(work);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            work.crawl.finishPage();
+        }
+    }
+
+    private void fetch(PageWork work) {
+        SiteCrawl crawl = work.crawl;
+        if (crawl.isStopped()) {
+            releaseSlot(crawl);
+            crawl.finishPage();
+            return;
+        }
+
+        String fullUrl = SiteCrawl.resolveFullUrl(crawl.getSite().getUrl(), work.path);
+        work.known = crawl.knownPage(work.path);
+        log.debug("Загрузка: {}", fullUrl);
+        try {
+            work.fetchResult = work.known != null && work.known.getCode() == 200
+                    ? pageFetcher.fetch(fullUrl, work.known.getEtag(), work.known.getLastModified())
+                    : pageFetcher.fetch(fullUrl);
+            FetchResult result = work.fetchResult;
+            politenessScheduler.onResponse(crawl.getHost(), result.getStatusCode(),
+                    result.getResponseTimeMs(), result.getRetryAfterMs());
+        } catch (ConnectionPoolTimeoutException e) {
+            // Не дождались соединения из пула: хост тут ни при чём, темп не снижаем
+            log.warn("Нет свободного соединения для {}: {}", work.path, e.getMessage());
+        } catch (IOException e) {
+            log.warn("Ошибка загрузки {}: {}", work.path, e.getMessage());
+            politenessScheduler.onFailure(crawl.getHost());
+        } catch (Exception e) {
+            log.error("Критическая ошибка при загрузке {}", work.path, e);
+        } finally {
+            releaseSlot(crawl);
+        }
+
+        submit(work.fetchResult != null || work.known != null ? parseStage : persistStage, work);
+    }
+
+    private void parse(PageWork work) {
+        FetchResult result = work.fetchResult;
+        work.fetchResult = null;
+
+        if (keepsStoredPage(work.known, result)) {
+            reuseStoredPage(work);
+            return;
+        }
+        if (result == null) {
+            submit(persistStage, work);
+            return;
+        }
+
+        work.code = result.getStatusCode();
+        if (work.known != null && (work.code == 404 || work.code == 410)) {
+            log.debug("Страница удалена с сайта: {} (код: {})", work.path, work.code);
+            work.removed = true;
+            submit(persistStage, work);
+            return;
+        }
+        if (work.code != 200 || !result.isHtml() || result.isOversized()) {
+            log.debug("Пропускаем: {} (код: {}, тип: {})", work.path, work.code, result.getContentType());
+            submit(persistStage, work);
+            return;
+        }
+
+        try {
+            work.etag = result.getEtag();
+            work.lastModified = result.getLastModified();
+            work.contentHash = result.contentHash();
+
+            Document document = result.parse();
+            ExtractedPage extracted = PageExtractor.extract(document, work.crawl.getSite().getUrl());
+            work.content = result.decode(document.charset());
+            work.title = extracted.getTitle();
+            work.text = extracted.getText();
+            discoverLinks(work, extracted.getLinks());
+
+            if (work.known != null && work.contentHash.equals(work.known.getContentHash())) {
+                markUnchanged(work);
+                return;
+            }
+
+            work.simhash = SimHash.of(work.text);
+            work.canonicalPath = work.crawl.findCanonical(work.path, work.simhash);
+            if (work.canonicalPath != null) {
+                log.debug("Почти-дубликат {} страницы {}, индексация пропущена", work.path, work.canonicalPath);
+                work.crawl.getDuplicates().incrementAndGet();
+                submit(persistStage, work);
+                return;
+            }
+            submit(lemmaStage, work);
+        } catch (Exception e) {
+            log.error("Критическая ошибка при обработке {}", work.path, e);
+            work.code = 0;
+            work.content = null;
+            work.title = null;
+            work.text = null;
+            submit(persistStage, work);
+        }
+    }
+
+    /**
+     * Сохранённая страница остаётся как есть, если сервер ответил 304 или временной
+     * ошибкой: удаляются только страницы, которые сервер явно отдаёт как 404/410.
+     */
+    private boolean keepsStoredPage(PageState known, FetchResult result) {
+        if (known == null || known.getCode() != 200) {
+            return false;
+        }
+        if (result == null || result.isNotModified()) {
+            return true;
+        }
+        int code = result.getStatusCode();
+        return code != 200 && code != 404 && code != 410;
+    }
+
+    private void reuseStoredPage(PageWork work) {
+        try {
+            String content = pageRepository.findContentById(work.known.getId());
+            if (content != null && !content.isEmpty()) {
+                String fullUrl = SiteCrawl.resolveFullUrl(work.crawl.getSite().getUrl(), work.path);
+                String siteUrl = work.crawl.getSite().getUrl();
+                discoverLinks(work, PageExtractor.extractLinks(Jsoup.parse(content, fullUrl), siteUrl));
+            }
+        } catch (Exception e) {
+            log.error("Ошибка разбора сохранённой страницы {}", work.path, e);
+        }
+        markUnchanged(work);
+    }
+
+    private void discoverLinks(PageWork work, Set<String> links) {
+        if (!work.crawl.isStopped()) {
+            for (String link : links) {
+                discover(work.crawl, link, work.depth + 1, LINK_PRIORITY);
+            }
+        }
+    }
+
+    private void markUnchanged(PageWork work) {
+        log.trace("Страница не изменилась: {}", work.path);
+        work.crawl.getUnchanged().incrementAndGet();
+        frontierStore.finished(work.crawl.getSite().getId(), work.path, false);
+        work.crawl.finishPage();
+    }
+
+    private void lemmatize(PageWork work) {
+        try {
+            work.lemmas = lemmaProcessor.extractLemmasFromText(work.text);
+        } catch (Exception e) {
+            log.error("Ошибка лемматизации страницы {}", work.path, e);
+            work.lemmas = Collections.emptyMap();
+        }
+        submit(persistStage, work);
+    }
+
+    private void persist(List<PageWork> batch) {
+        try {
+            List<PageRecord> records = new ArrayList<>(batch.size());
+            for (PageWork work : batch) {
+                SiteEntity site = work.crawl.getSite();
+                if (work.removed) {
+                    records.add(PageRecord.removed(site, work.path, work.known.getId(), work.code));
+                    continue;
+                }
+                PageRecord record = new PageRecord(site, work.path, work.code, work.content, work.title, work.text,
+                        work.lemmas, work.etag, work.lastModified, work.contentHash);
+                record.setSimhash(work.simhash);
+                record.setCanonicalPath(work.canonicalPath);
+                records.add(record);
+            }
+            pageWriter.write(records);
+            for (PageWork work : batch) {
+                if (work.lemmas != null) {
+                    work.crawl.getCounter().incrementAndGet();
+                }
+                frontierStore.finished(work.crawl.getSite().getId(), work.path, work.code == 0 && !work.removed);
+            }
+        } catch (Exception e) {
+            log.error("Ошибка сохранения пачки из {} страниц", batch.size(), e);
+        } finally {
+            batch.forEach(work -> work.crawl.finishPage());
+        }
+    }
+
+    private int threads(int configured) {
+        return configured > 0 ? configured : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Страница, проходящая по конвейеру. Поля заполняются по мере прохождения
+     * стадий и обнуляются, как только становятся не нужны.
+     */
+    private static class PageWork {
+        private final SiteCrawl crawl;
+        private final String path;
+        private final int depth;
+        private PageState known;
+        private FetchResult fetchResult;
+        private int code;
+        private boolean removed;
+        private String etag;
+        private String lastModified;
+        private String contentHash;
+        private String content;
+        private String title;
+        private String text;
+        private Long simhash;
+        private String canonicalPath;
+        private Map<String, Integer> lemmas;
+
+        PageWork(SiteCrawl crawl, String path, int depth) {
+            this.crawl = crawl;
+            this.path = path;
+            this.depth = depth;
+        }
+    }
+}
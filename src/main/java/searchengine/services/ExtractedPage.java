@@ -0,0 +1,17 @@
+package searchengine.services;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Set;
+
+/**
+ * Результат единственного разбора HTML страницы: заголовок, видимый текст и внутренние ссылки.
+ */
+@Getter
+@RequiredArgsConstructor
+public class ExtractedPage {
+    private final String title;
+    private final String text;
+    private final Set<String> links;
+}
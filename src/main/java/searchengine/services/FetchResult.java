@@ -0,0 +1,54 @@
+package searchengine.services;
+
+import com.google.common.hash.Hashing;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+@Getter
+@RequiredArgsConstructor
+public class FetchResult {
+    private final String url;
+    private final int statusCode;
+    private final String contentType;
+    private final String charset;
+    private final byte[] body;
+    private final String etag;
+    private final String lastModified;
+    private final boolean oversized;
+    private final long responseTimeMs;
+    private final long retryAfterMs;
+
+    public boolean isHtml() {
+        return isHtml(contentType);
+    }
+
+    public static boolean isHtml(String contentType) {
+        return contentType.contains("text/html") ||
+                contentType.contains("application/xhtml+xml");
+    }
+
+    public boolean isNotModified() {
+        return statusCode == 304;
+    }
+
+    public String contentHash() {
+        return Hashing.sha256().hashBytes(body).toString();
+    }
+
+    /**
+     * Исходный HTML в кодировке, определённой при разборе, — без повторной сериализации DOM.
+     */
+    public String decode(Charset charset) {
+        return new String(body, charset);
+    }
+
+    public Document parse() throws IOException {
+        return Jsoup.parse(new ByteArrayInputStream(body), charset, url);
+    }
+}
@@ -0,0 +1,113 @@
+package searchengine.services;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Множество 64-битных отпечатков путей: открытая адресация в массивах {@code long},
+ * разбитых на полосы со своими блокировками. Около 10–20 байт на путь вместо
+ * сотни с лишним для строк; вероятность коллизии на миллионе путей порядка 10⁻⁸.
+ */
+public class FingerprintVisitedSet implements VisitedSet {
+
+    private static final HashFunction FINGERPRINT = Hashing.farmHashFingerprint64();
+    private static final int STRIPE_BITS = 6;
+
+    private final Stripe[] stripes = new Stripe[1 << STRIPE_BITS];
+
+    public FingerprintVisitedSet() {
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    @Override
+    public boolean add(String path) {
+        long fingerprint = fingerprint(path);
+        Stripe stripe = stripeOf(fingerprint);
+        synchronized (stripe) {
+            return stripe.add(fingerprint);
+        }
+    }
+
+    @Override
+    public boolean contains(String path) {
+        long fingerprint = fingerprint(path);
+        Stripe stripe = stripeOf(fingerprint);
+        synchronized (stripe) {
+            return stripe.contains(fingerprint);
+        }
+    }
+
+    @Override
+    public long size() {
+        long size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size;
+            }
+        }
+        return size;
+    }
+
+    private Stripe stripeOf(long fingerprint) {
+        return stripes[(int) (fingerprint >>> (Long.SIZE - STRIPE_BITS))];
+    }
+
+    private static long fingerprint(String path) {
+        long fingerprint = FINGERPRINT.hashString(path, StandardCharsets.UTF_8).asLong();
+        // 0 обозначает пустую ячейку таблицы
+        return fingerprint != 0 ? fingerprint : 1;
+    }
+
+    private static class Stripe {
+        private long[] table = new long[64];
+        private int size;
+
+        boolean add(long fingerprint) {
+            if (size + 1 > table.length * 3 / 4) {
+                resize();
+            }
+            if (!insert(table, fingerprint)) {
+                return false;
+            }
+            size++;
+            return true;
+        }
+
+        boolean contains(long fingerprint) {
+            int mask = table.length - 1;
+            for (int i = (int) fingerprint & mask; table[i] != 0; i = (i + 1) & mask) {
+                if (table[i] == fingerprint) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void resize() {
+            long[] resized = new long[table.length * 2];
+            for (long fingerprint : table) {
+                if (fingerprint != 0) {
+                    insert(resized, fingerprint);
+                }
+            }
+            table = resized;
+        }
+
+        private static boolean insert(long[] table, long fingerprint) {
+            int mask = table.length - 1;
+            int i = (int) fingerprint & mask;
+            while (table[i] != 0) {
+                if (table[i] == fingerprint) {
+                    return false;
+                }
+                i = (i + 1) & mask;
+            }
+            table[i] = fingerprint;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package searchengine.services;
+
+import lombok.Getter;
+
+/**
+ * Путь в очереди обхода сайта. Очередь выдаёт сначала пути с большим приоритетом,
+ * затем с меньшей глубиной, затем в порядке обнаружения — то есть при равных
+ * приоритетах обход идёт в ширину.
+ */
+@Getter
+public class FrontierEntry implements Comparable<FrontierEntry> {
+    private final String path;
+    private final int depth;
+    private final float priority;
+    private final long sequence;
+
+    public FrontierEntry(String path, int depth, float priority, long sequence) {
+        this.path = path;
+        this.depth = depth;
+        this.priority = priority;
+        this.sequence = sequence;
+    }
+
+    @Override
+    public int compareTo(FrontierEntry other) {
+        int result = Float.compare(other.priority, priority);
+        if (result == 0) {
+            result = Integer.compare(depth, other.depth);
+        }
+        return result != 0 ? result : Long.compare(sequence, other.sequence);
+    }
+}
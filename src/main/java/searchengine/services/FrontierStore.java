@@ -0,0 +1,133 @@
+package searchengine.services;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerConfig;
+import searchengine.models.CrawlQueueStatus;
+import searchengine.repositories.CrawlQueueRepository;
+import searchengine.repositories.CrawlQueueRepository.QueuedPath;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Долговременная очередь обхода. События «путь обнаружен / обработан / не удался»
+ * копятся в памяти и периодически сохраняются в {@code crawl_queue} (контрольная точка).
+ * События пишутся в порядке поступления, поэтому ссылки страницы попадают
+ * в контрольную точку не позже отметки о её обработке.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FrontierStore {
+
+    private final CrawlQueueRepository crawlQueueRepository;
+    private final CrawlerConfig crawlerConfig;
+
+    private final Queue<Entry> events = new ConcurrentLinkedQueue<>();
+    private ScheduledExecutorService checkpointer;
+
+    @PostConstruct
+    public void start() {
+        long interval = Math.max(100, crawlerConfig.getFrontierCheckpointMs());
+        checkpointer = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("frontier-checkpoint").setDaemon(true).build());
+        checkpointer.scheduleWithFixedDelay(this::checkpointQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        checkpointer.shutdownNow();
+        checkpointQuietly();
+    }
+
+    public void discovered(int siteId, String path, int depth) {
+        events.add(new Entry(siteId, path, CrawlQueueStatus.PENDING, depth));
+    }
+
+    public void finished(int siteId, String path, boolean failed) {
+        events.add(new Entry(siteId, path, failed ? CrawlQueueStatus.FAILED : CrawlQueueStatus.DONE, 0));
+    }
+
+    /**
+     * Сохраняет накопленные события. Для одного пути побеждает последний завершающий статус.
+     */
+    public synchronized void checkpoint() {
+        Map<Integer, Map<String, Entry>> bySite = new TreeMap<>();
+        List<Entry> drained = new ArrayList<>();
+        Entry entry;
+        while ((entry = events.poll()) != null) {
+            drained.add(entry);
+            Map<String, Entry> sitePaths = bySite.computeIfAbsent(entry.siteId, id -> new TreeMap<>());
+            Entry previous = sitePaths.get(entry.path);
+            if (previous == null) {
+                sitePaths.put(entry.path, entry);
+            } else if (entry.status != CrawlQueueStatus.PENDING) {
+                sitePaths.put(entry.path, new Entry(entry.siteId, entry.path, entry.status, previous.depth));
+            }
+        }
+        if (bySite.isEmpty()) {
+            return;
+        }
+
+        List<Integer> siteIds = new ArrayList<>();
+        List<String> paths = new ArrayList<>();
+        List<String> statuses = new ArrayList<>();
+        List<Integer> depths = new ArrayList<>();
+        bySite.forEach((siteId, sitePaths) -> sitePaths.forEach((path, saved) -> {
+            siteIds.add(siteId);
+            paths.add(path);
+            statuses.add(saved.status.name());
+            depths.add(saved.depth);
+        }));
+        try {
+            crawlQueueRepository.save(siteIds, paths, statuses, depths);
+        } catch (RuntimeException e) {
+            events.addAll(drained);
+            throw e;
+        }
+        log.trace("Контрольная точка очереди обхода: {} записей", paths.size());
+    }
+
+    public List<QueuedPath> load(int siteId) {
+        checkpoint();
+        return crawlQueueRepository.findBySiteId(siteId);
+    }
+
+    /**
+     * Удаляет сохранённую очередь сайта: перед новым полным обходом и после завершённого.
+     */
+    public synchronized void clear(int siteId) {
+        checkpoint();
+        crawlQueueRepository.deleteBySiteId(siteId);
+    }
+
+    private void checkpointQuietly() {
+        try {
+            checkpoint();
+        } catch (Exception e) {
+            log.error("Ошибка сохранения контрольной точки очереди обхода", e);
+        }
+    }
+
+    private static class Entry {
+        private final int siteId;
+        private final String path;
+        private final CrawlQueueStatus status;
+        private final int depth;
+
+        Entry(int siteId, String path, CrawlQueueStatus status, int depth) {
+            this.siteId = siteId;
+            this.path = path;
+            this.status = status;
+            this.depth = depth;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package searchengine.services;
+
+public enum IndexingMode {
+    /** Очистить данные сайтов и обойти их заново. */
+    FULL,
+    /** Перепроверить сохранённые страницы и переиндексировать только изменившиеся. */
+    INCREMENTAL,
+    /** Продолжить прерванный обход с последней контрольной точки очереди. */
+    RESUME
+}
@@ -1,31 +1,25 @@
 package searchengine.services;
 
 import lombok.extern.slf4j.Slf4j;
-import org.jsoup.Connection;
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import searchengine.config.CrawlerConfig;
 import searchengine.config.Site;
 import searchengine.config.SitesList;
+import searchengine.exceptions.BadRequestException;
 import searchengine.models.*;
 import searchengine.repositories.*;
+import searchengine.repositories.BulkPageRepository.PageState;
+import searchengine.repositories.CrawlQueueRepository.QueuedPath;
 
 import javax.annotation.PreDestroy;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -33,37 +27,44 @@ public class IndexingService {
 
     private final AtomicBoolean isCurrentlyIndexing = new AtomicBoolean(false);
     private final AtomicBoolean stopRequested = new AtomicBoolean(false);
+    private final Set<SiteCrawl> activeCrawls = ConcurrentHashMap.newKeySet();
 
     @Autowired
     private SiteRepository siteRepository;
     @Autowired
-    private PageRepository pageRepository;
-    @Autowired
-    private ApplicationContext applicationContext;
-    @Autowired
     private SitesList sitesList;
     @Autowired
     private CrawlerConfig crawlerConfig;
     @Autowired
-    private SiteCleanupService siteCleanupService;
+    private SiteGenerationService siteGenerationService;
+    @Autowired
+    private PolitenessScheduler politenessScheduler;
+    @Autowired
+    private PageFetcher pageFetcher;
+    @Autowired
+    private CrawlPipeline crawlPipeline;
+    @Autowired
+    private LemmaDictionary lemmaDictionary;
+    @Autowired
+    private LemmaProcessingService lemmaProcessingService;
+    @Autowired
+    private PageWriter pageWriter;
+    @Autowired
+    private BulkPageRepository bulkPageRepository;
+    @Autowired
+    private PageRepository pageRepository;
+    @Autowired
+    private FrontierStore frontierStore;
 
-    private final ForkJoinPool forkJoinPool;
     private final ExecutorService executor;
 
     public IndexingService() {
-        this.forkJoinPool = new ForkJoinPool(
-                Runtime.getRuntime().availableProcessors(),
-                ForkJoinPool.defaultForkJoinWorkerThreadFactory,
-                (t, e) -> log.error("Необработанное исключение в пуле потоков", e),
-                true
-        );
         this.executor = Executors.newSingleThreadExecutor();
     }
 
     @PreDestroy
     public void shutdown() {
         stopRequested.set(true);
-        forkJoinPool.shutdownNow();
         executor.shutdownNow();
         try {
             if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
@@ -76,11 +77,15 @@ public class IndexingService {
     }
 
     public boolean startIndexing() {
+        return startIndexing(IndexingMode.FULL);
+    }
+
+    public boolean startIndexing(IndexingMode mode) {
         if (!isCurrentlyIndexing.compareAndSet(false, true)) {
             return false;
         }
         stopRequested.set(false);
-        executor.submit(this::executeIndexing);
+        executor.submit(() -> executeIndexing(mode));
         return true;
     }
 
@@ -89,6 +94,7 @@ public class IndexingService {
             return false;
         }
         stopRequested.set(true);
+        activeCrawls.forEach(crawlPipeline::stop);
         log.info("Запрошена остановка индексации");
         return true;
     }
@@ -97,9 +103,9 @@ public class IndexingService {
         return isCurrentlyIndexing.get();
     }
 
-    private void executeIndexing() {
+    private void executeIndexing(IndexingMode mode) {
         try {
-            log.info("Начинаем полную индексацию сайтов");
+            log.info("Начинаем индексацию сайтов, режим: {}", mode);
             List<SiteEntity> sitesToIndex = new ArrayList<>();
 
             for (Site siteConfig : sitesList.getSites()) {
@@ -108,31 +114,14 @@ public class IndexingService {
                     break;
                 }
 
-                SiteEntity site = prepareSiteForIndexing(siteConfig);
+                SiteEntity site = prepareSiteForIndexing(siteConfig, mode);
                 if (site != null) {
                     sitesToIndex.add(site);
                 }
             }
 
-            for (SiteEntity site : sitesToIndex) {
-                if (stopRequested.get()) {
-                    log.info("Индексация остановлена во время обработки сайтов");
-                    break;
-                }
-                try {
-                    log.info("🌐 Начинаем индексацию сайта: {}", site.getName());
-                    crawlSite(site);
-                    if (!stopRequested.get()) {
-                        site.statusTimeUpdate(Status.INDEXED);
-                        siteRepository.save(site);
-                        log.info("✅ Сайт {} успешно проиндексирован", site.getName());
-                    }
-                } catch (Exception e) {
-                    log.error("💥 Критическая ошибка при индексации сайта {}", site.getName(), e);
-                    handleIndexingError(site, "Критическая ошибка: " + e.getMessage());
-                }
-            }
-            log.info("🏁 Полная индексация завершена");
+            crawlSitesConcurrently(sitesToIndex, mode);
+            log.info("🏁 Индексация завершена");
         } catch (Exception e) {
             log.error("Необработанное исключение в процессе индексации", e);
         } finally {
@@ -140,373 +129,252 @@ public class IndexingService {
         }
     }
 
-    private SiteEntity prepareSiteForIndexing(Site siteConfig) {
-        String normalizedUrl = normalizeUrl(siteConfig.getUrl());
-        log.info("🔧 Подготовка сайта: {} (URL: {})", siteConfig.getName(), normalizedUrl);
-
-        SiteEntity site = siteRepository.findByUrl(normalizedUrl)
-                .orElseGet(() -> createNewSite(siteConfig, normalizedUrl));
-
-        siteCleanupService.resetSiteData(site);
-
-        return site;
-    }
-
-    private SiteEntity createNewSite(Site siteConfig, String normalizedUrl) {
-        SiteEntity site = new SiteEntity();
-        site.setUrl(normalizedUrl);
-        site.setName(siteConfig.getName());
-        site.setStatus(Status.INDEXING);
-        site.setStatusTime(LocalDateTime.now());
-        log.info("Создан новый сайт для индексации: {}", site.getName());
-        return siteRepository.save(site);
-    }
-
-
-    private void crawlSite(SiteEntity site) {
-        Set<String> visitedPaths = ConcurrentHashMap.newKeySet();
-        AtomicInteger counter = new AtomicInteger(0);
-
-        log.info("Старт обхода сайта: {} с корневого пути /", site.getName());
-        CrawlTask rootTask = new CrawlTask(site, "/", visitedPaths, counter);
-        forkJoinPool.invoke(rootTask);
-
-        log.info("Завершена индексация сайта {}. Всего проиндексировано страниц: {}", site.getName(), counter.get());
-    }
-
-    private void randomDelay() {
+    private void crawlSitesConcurrently(List<SiteEntity> sitesToIndex, IndexingMode mode) throws InterruptedException {
+        int maxSites = Math.max(1, crawlerConfig.getMaxConcurrentSites());
+        ExecutorService siteExecutor = Executors.newFixedThreadPool(maxSites);
         try {
-            int min = crawlerConfig.getDelayMinMs();
-            int max = crawlerConfig.getDelayMaxMs();
-            if (min <= max) {
-                int delay = min + ThreadLocalRandom.current().nextInt(max - min + 1);
-                Thread.sleep(delay);
+            List<Future<?>> crawls = new ArrayList<>();
+            for (SiteEntity site : sitesToIndex) {
+                crawls.add(siteExecutor.submit(() -> indexSite(site, mode)));
             }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+            for (Future<?> crawl : crawls) {
+                try {
+                    crawl.get();
+                } catch (ExecutionException e) {
+                    log.error("Необработанное исключение при обходе сайта", e.getCause());
+                }
+            }
+        } finally {
+            siteExecutor.shutdownNow();
         }
     }
 
-    private String normalizeUrl(String url) {
+    private void indexSite(SiteEntity site, IndexingMode mode) {
+        if (stopRequested.get()) {
+            log.info("Индексация сайта {} не начата: запрошена остановка", site.getName());
+            return;
+        }
         try {
-            URL baseUrl = new URL(url);
-            String path = baseUrl.getPath();
-            if (path == null || path.isEmpty() || "/".equals(path)) {
-                return baseUrl.getProtocol() + "://" + baseUrl.getHost() +
-                        (baseUrl.getPort() != -1 ? ":" + baseUrl.getPort() : "") + "/";
+            log.info("🌐 Начинаем индексацию сайта: {}", site.getName());
+            crawlSite(site, mode);
+            lemmaDictionary.flush(site.getId());
+            if (stopRequested.get()) {
+                frontierStore.checkpoint();
+                log.info("Обход сайта {} остановлен, очередь сохранена для продолжения", site.getName());
+            } else {
+                if (mode != IndexingMode.FULL) {
+                    removeUnusedLemmas(site);
+                }
+                frontierStore.clear(site.getId());
+                siteGenerationService.activate(site);
+                log.info("✅ Сайт {} успешно проиндексирован", site.getName());
             }
-            String normalized = baseUrl.toString().replaceAll("/+$", "") + "/";
-            return normalized;
-        } catch (MalformedURLException e) {
-            log.error("Некорректный URL: {}", url, e);
-            return url.endsWith("/") ? url : url + "/";
+        } catch (Exception e) {
+            log.error("💥 Критическая ошибка при индексации сайта {}", site.getName(), e);
+            handleIndexingError(site, "Критическая ошибка: " + e.getMessage());
         }
     }
 
-    private void handleIndexingError(SiteEntity site, String errorMessage) {
-        site.lastErrorUpdate(Status.FAILED, errorMessage);
-        siteRepository.save(site);
-        log.error("Сайт {} помечен как FAILED: {}", site.getName(), errorMessage);
-    }
+    /**
+     * Полная индексация строит новое поколение сайта, не трогая текущее, по которому идёт поиск.
+     * Инкрементальная обновляет текущее поколение на месте, продолжение — недостроенное.
+     */
+    private SiteEntity prepareSiteForIndexing(Site siteConfig, IndexingMode mode) {
+        String normalizedUrl = UrlCanonicalizer.siteUrl(siteConfig.getUrl());
+        log.info("🔧 Подготовка сайта: {} (URL: {})", siteConfig.getName(), normalizedUrl);
 
-    private class CrawlTask extends RecursiveAction {
-        private final SiteEntity site;
-        private final String path;
-        private final Set<String> visitedPaths;
-        private final AtomicInteger counter;
-
-        private static final Set<String> EXCLUDED_EXTENSIONS = Set.of(
-                ".jpg", ".jpeg", ".png", ".gif", ".svg", ".ico", ".webp", ".bmp", ".tiff",
-                ".css", ".js", ".json", ".pdf", ".doc", ".docx", ".xls", ".xlsx", ".ppt",
-                ".pptx", ".odt", ".rtf", ".zip", ".rar", ".7z", ".tar", ".gz", ".mp3",
-                ".mp4", ".avi", ".mov", ".wmv", ".flv", ".wav", ".ogg", ".webm", ".woff",
-                ".woff2", ".ttf", ".eot", ".otf", ".xml", ".rss", ".atom", ".txt", ".csv",
-                ".exe", ".dmg", ".apk", ".jar", ".bin", ".iso", ".tar.gz", ".tgz"
-        );
-
-        CrawlTask(SiteEntity site, String path, Set<String> visitedPaths, AtomicInteger counter) {
-            this.site = site;
-            this.path = path;
-            this.visitedPaths = visitedPaths;
-            this.counter = counter;
+        Optional<SiteEntity> active = siteRepository.findByUrlAndActiveTrue(normalizedUrl);
+        Optional<SiteEntity> building = siteRepository.findBuildingByUrl(normalizedUrl);
+
+        SiteEntity site;
+        if (mode == IndexingMode.FULL) {
+            building.ifPresent(siteGenerationService::discard);
+            site = createGeneration(siteConfig, normalizedUrl);
+        } else {
+            Optional<SiteEntity> target = mode == IndexingMode.RESUME
+                    ? building.or(() -> active)
+                    : active.or(() -> building);
+            site = target.orElseGet(() -> createGeneration(siteConfig, normalizedUrl));
         }
 
-        @Override
-        protected void compute() {
-            // Проверка на остановку
-            if (stopRequested.get()) {
-                log.debug("Задача прервана по запросу остановки: {}", path);
-                return;
-            }
-
-            // Нормализация пути
-            String cleanPath = path.split("\\?")[0].split("#")[0];
-            if (!isHtmlPath(cleanPath)) {
-                log.trace("Пропускаем путь (не HTML): {}", cleanPath);
-                return;
-            }
-
-            // Проверка на посещение
-            if (!visitedPaths.add(cleanPath)) {
-                log.trace("Путь уже посещен: {}", cleanPath);
-                return;
-            }
-
-            try {
-                randomDelay();
-                String fullUrl = resolveFullUrl(site.getUrl(), cleanPath);
-                log.debug("Загрузка: {}", fullUrl);
-
-                Connection.Response response = Jsoup.connect(fullUrl)
-                        .userAgent(crawlerConfig.getUserAgent())
-                        .referrer(crawlerConfig.getReferrer())
-                        .timeout(10000)
-                        .ignoreHttpErrors(true)
-                        .execute();
-
-                int statusCode = response.statusCode();
-                String contentType = response.contentType().toLowerCase();
-
-                if (statusCode != 200 || !isHtmlContentType(contentType)) {
-                    log.debug("Пропускаем: {} (код: {}, тип: {})", cleanPath, statusCode, contentType);
-                    savePage(site, cleanPath, statusCode, "");
-                    return;
-                }
-
-                Document document = response.parse();
-                String content = document.html();
-
-                savePage(site, cleanPath, statusCode, content);
-                counter.incrementAndGet();
-
-                LemmaProcessingService self = applicationContext.getBean(LemmaProcessingService.class);
-                self.processLemmas(site, cleanPath, content);
+        if (mode == IndexingMode.RESUME && site.getStatus() == Status.INDEXED) {
+            log.info("Сайт {} уже проиндексирован, продолжать нечего", site.getName());
+            return null;
+        }
+        if (mode == IndexingMode.INCREMENTAL) {
+            frontierStore.clear(site.getId());
+        }
+        site.statusTimeUpdate(Status.INDEXING);
+        return siteRepository.save(site);
+    }
 
-                if (!stopRequested.get()) {
-                    Set<String> childPaths = extractLinks(document, site.getUrl());
-                    List<CrawlTask> subTasks = childPaths.stream()
-                            .filter(p -> !visitedPaths.contains(p) && isHtmlPath(p))
-                            .map(p -> new CrawlTask(site, p, visitedPaths, counter))
-                            .collect(Collectors.toList());
+    private SiteEntity createGeneration(Site siteConfig, String normalizedUrl) {
+        SiteEntity site = siteGenerationService.createGeneration(normalizedUrl, siteConfig.getName());
+        log.info("Создано поколение {} сайта {} для индексации", site.getGeneration(), site.getName());
+        return site;
+    }
 
-                    if (!subTasks.isEmpty()) {
-                        invokeAll(subTasks);
-                    }
-                }
 
-            } catch (IOException e) {
-                log.warn("Ошибка загрузки {}: {}", cleanPath, e.getMessage());
-                savePage(site, cleanPath, 0, "");
-            } catch (Exception e) {
-                log.error("Критическая ошибка при обработке {}", cleanPath, e);
-                savePage(site, cleanPath, 0, "");
+    private void crawlSite(SiteEntity site, IndexingMode mode) throws InterruptedException, ExecutionException {
+        Map<String, PageState> knownPages = mode != IndexingMode.FULL ? bulkPageRepository.findPageStates(site.getId()) : null;
+        SiteCrawl crawl = new SiteCrawl(site, crawlerConfig, stopRequested, knownPages);
+        if (mode == IndexingMode.RESUME) {
+            List<QueuedPath> frontier = frontierStore.load(site.getId());
+            if (!frontier.isEmpty()) {
+                crawl.restore(frontier);
+                log.info("Продолжаем обход сайта {}: осталось путей {}", site.getName(), crawl.getResumePaths().size());
             }
         }
-
-        private boolean isHtmlPath(String path) {
-            if (path == null || path.isEmpty() || path.startsWith("#")) {
-                return false;
-            }
-            String normalized = path.toLowerCase().split("\\?")[0];
-            if (normalized.matches(".+\\.[a-z0-9]+$")) {
-                for (String ext : EXCLUDED_EXTENSIONS) {
-                    if (normalized.endsWith(ext)) {
-                        return false;
-                    }
-                }
-            }
-            return true;
+        activeCrawls.add(crawl);
+        try {
+            log.info("Старт обхода сайта: {}", site.getName());
+            crawlPipeline.crawl(crawl).get();
+        } finally {
+            activeCrawls.remove(crawl);
         }
 
-        private Set<String> extractLinks(Document document, String baseUrl) {
-            Set<String> links = ConcurrentHashMap.newKeySet();
-            Elements elements = document.select("a[href]");
-
-            for (Element element : elements) {
-                String href = element.attr("abs:href").trim();
-                if (href.isEmpty()) continue;
+        log.info("Завершена индексация сайта {}. Всего проиндексировано страниц: {}, без изменений: {}, "
+                        + "дубликатов: {}, запрещено robots.txt: {}",
+                site.getName(), crawl.getCounter().get(), crawl.getUnchanged().get(),
+                crawl.getDuplicates().get(), crawl.getDisallowed().get());
+    }
 
-                if (!isInternalLink(href, baseUrl)) {
-                    continue;
-                }
+    /**
+     * После инкрементального обхода удаляет леммы, частота которых упала до нуля.
+     * Одиночные страницы из очереди индексации могут записываться в сайт в это же время,
+     * поэтому удаление идёт через словарь — под его блокировкой сайта.
+     */
+    private void removeUnusedLemmas(SiteEntity site) {
+        int removed = lemmaDictionary.removeUnusedLemmas(site.getId());
+        log.info("Удалено неиспользуемых лемм сайта {}: {}", site.getName(), removed);
+    }
 
-                try {
-                    URL url = new URL(href);
-                    String urlPath = url.getPath();
-                    if (urlPath == null || urlPath.isEmpty()) urlPath = "/";
-
-                    String normalizedPath = urlPath.replaceAll("/+$", "");
-                    if (!normalizedPath.startsWith("/")) {
-                        normalizedPath = "/" + normalizedPath;
-                    }
-                    normalizedPath = normalizedPath.split("\\?")[0].split("#")[0];
-
-                    links.add(normalizedPath);
-                } catch (MalformedURLException e) {
-                    log.debug("Некорректная ссылка: {}", href);
-                }
-            }
-            return links;
-        }
+    private void awaitFetchSlot(String url) throws InterruptedException {
+        CountDownLatch slot = new CountDownLatch(1);
+        politenessScheduler.schedule(PolitenessScheduler.hostOf(url), slot::countDown);
+        slot.await();
+    }
 
-        private boolean isInternalLink(String href, String baseUrl) {
-            return href.startsWith(baseUrl) ||
-                    href.startsWith(baseUrl.replace("https://", "http://")) ||
-                    href.startsWith(baseUrl.replace("http://", "https://"));
-        }
+    private void handleIndexingError(SiteEntity site, String errorMessage) {
+        frontierStore.checkpoint();
+        site.lastErrorUpdate(Status.FAILED, errorMessage);
+        siteRepository.save(site);
+        log.error("Сайт {} помечен как FAILED: {}", site.getName(), errorMessage);
     }
 
-    private void savePage(SiteEntity site, String path, int code, String content) {
+    private void savePage(SiteEntity site, String path, int code, String content, Map<String, Integer> lemmas) {
         try {
-            Page page = pageRepository.findBySiteIdAndPath(site.getId(), path)
-                    .orElseGet(() -> {
-                        Page newPage = new Page();
-                        newPage.setSite(site);
-                        newPage.setPath(path);
-                        return newPage;
-                    });
-
-            page.setCode(code);
-            page.setContent(code == 200 && content != null ? content : "");
-            pageRepository.save(page);
+            pageWriter.write(List.of(new PageRecord(site, path, code, content, null, null, lemmas,
+                    null, null, null)));
             log.trace("Страница сохранена: {}{} (код: {})", site.getUrl(), path, code);
         } catch (Exception e) {
             log.error("Ошибка сохранения страницы {}{}", site.getUrl(), path, e);
         }
     }
 
-    private String resolveFullUrl(String baseUrl, String path) {
+    /**
+     * Проверяет адрес страницы для отдельной индексации и приводит его к каноническому виду.
+     *
+     * @throws BadRequestException если страницу нельзя проиндексировать
+     */
+    public PageTarget resolvePage(String url) {
         try {
-            URL base = new URL(baseUrl);
-            URL absolute = new URL(base, path);
-            return absolute.toString();
+            new URL(url); // только проверка формата
         } catch (MalformedURLException e) {
-            log.warn("Ошибка разрешения URL: {}{}", baseUrl, path);
-            if (path.startsWith("/")) {
-                try {
-                    URL url = new URL(baseUrl);
-                    return url.getProtocol() + "://" + url.getHost() +
-                            (url.getPort() != -1 ? ":" + url.getPort() : "") + path;
-                } catch (MalformedURLException ex) {
-                    return baseUrl + path;
-                }
-            }
-            return baseUrl + (path.startsWith("/") ? path.substring(1) : path);
-        }
-    }
-
-    private boolean isHtmlContentType(String contentType) {
-        return contentType.contains("text/html") ||
-                contentType.contains("application/xhtml+xml");
-    }
-
-    private boolean isPageIndexPath(String path) {
-        String normalized = path.toLowerCase().split("\\?")[0];
-        for (String ext : CrawlTask.EXCLUDED_EXTENSIONS) {
-            if (normalized.endsWith(ext)) {
-                return false;
-            }
+            throw new BadRequestException("Некорректный URL: " + url);
         }
-        return true;
-    }
-
-    @Transactional
-    public String indexSinglePage(String url) {
-        try {
-
-            if (isCurrentlyIndexing.get()) {
-                return "Невозможно проиндексировать отдельную страницу во время полной индексации";
-            }
-
-            URL pageUrl = new URL(url);
-            String baseUrl = pageUrl.getProtocol() + "://" + pageUrl.getHost() +
-                    (pageUrl.getPort() != -1 ? ":" + pageUrl.getPort() : "");
 
-            baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
-
-            SiteEntity targetSite = null;
-
-            for (Site siteConfig : sitesList.getSites()) {
-                String configSiteUrl = normalizeUrl(siteConfig.getUrl());
-                if (baseUrl.equals(configSiteUrl) ||
-                        baseUrl.equals(configSiteUrl.replace("https://", "http://")) ||
-                        baseUrl.equals(configSiteUrl.replace("http://", "https://"))) {
-
-                    Optional<SiteEntity> siteEntityOpt = siteRepository.findByUrl(configSiteUrl);
-                    if (!siteEntityOpt.isPresent()) {
-                        return "Сайт еще не проиндексирован. Сначала выполните полную индексацию.";
-                    }
-                    targetSite = siteEntityOpt.get();
-                    break;
-                }
+        for (Site siteConfig : sitesList.getSites()) {
+            String siteUrl = UrlCanonicalizer.siteUrl(siteConfig.getUrl());
+            String path = UrlCanonicalizer.internalPath(url, siteUrl);
+            if (path == null) {
+                continue;
             }
-
-            if (targetSite == null) {
-                return "Данная страница находится за пределами сайтов, указанных в конфигурационном файле";
+            if (!UrlCanonicalizer.isHtmlPath(path)) {
+                throw new BadRequestException("Страница имеет расширение, которое исключено из индексации");
             }
-
-            String path = pageUrl.getPath();
-            if (path == null || path.isEmpty() || path.equals("/")) {
-                path = "/";
-            } else {
-                path = path.replaceAll("/+$", "") + "/";
+            // Те же поколения, что берёт indexPage: отброшенные, ждущие удаления, не подходят
+            if (siteRepository.findByUrlAndActiveTrue(siteUrl).isEmpty()
+                    && siteRepository.findBuildingByUrl(siteUrl).isEmpty()) {
+                throw new BadRequestException("Сайт еще не проиндексирован. Сначала выполните полную индексацию.");
             }
+            return new PageTarget(siteUrl, path);
+        }
+        throw new BadRequestException("Данная страница находится за пределами сайтов, указанных в конфигурационном файле");
+    }
 
-            if (!isPageIndexPath(path)) {
-                return "Страница имеет расширение, которое исключено из индексации";
-            }
-
-            indexPageOnly(targetSite, path);
-            return null;
-
-        } catch (MalformedURLException e) {
-            return "Некорректный URL: " + url;
-        } catch (Exception e) {
-            log.error("Ошибка индексации страницы {}", url, e);
-            return "Внутренняя ошибка при индексации страницы: " + e.getMessage();
+    /**
+     * Загружает страницу и записывает её в текущее поколение сайта и в строящееся полной
+     * индексацией, если она идёт: иначе обновление потерялось бы при переключении поколений.
+     */
+    public void indexPage(PageTarget target) throws IOException {
+        List<SiteEntity> generations = new ArrayList<>(2);
+        siteRepository.findByUrlAndActiveTrue(target.getSiteUrl()).ifPresent(generations::add);
+        siteRepository.findBuildingByUrl(target.getSiteUrl()).ifPresent(generations::add);
+        if (generations.isEmpty()) {
+            throw new IllegalStateException("Сайт " + target.getSiteUrl() + " еще не проиндексирован");
         }
+        indexPageOnly(generations, target);
     }
 
-    private void indexPageOnly(SiteEntity site, String path) throws IOException {
+    private void indexPageOnly(List<SiteEntity> generations, PageTarget target) throws IOException {
+        String path = target.getPath();
         try {
-            randomDelay();
-            String fullUrl = resolveFullUrl(site.getUrl(), path);
+            String fullUrl = target.getUrl();
+            awaitFetchSlot(fullUrl);
             log.debug("Загрузка (одиночная страница): {}", fullUrl);
 
-            Connection.Response response = Jsoup.connect(fullUrl)
-                    .userAgent(crawlerConfig.getUserAgent())
-                    .referrer(crawlerConfig.getReferrer())
-                    .timeout(10000)
-                    .ignoreHttpErrors(true)
-                    .execute();
+            FetchResult result = pageFetcher.fetch(fullUrl);
+            int statusCode = result.getStatusCode();
 
-            int statusCode = response.statusCode();
-            String contentType = response.contentType().toLowerCase();
-
-            if (statusCode != 200 || !isHtmlContentType(contentType)) {
-                log.debug("Пропускаем: {} (код: {}, тип: {})", path, statusCode, contentType);
-                savePage(site, path, statusCode, "");
+            if (statusCode != 200 || !result.isHtml() || result.isOversized()) {
+                log.debug("Пропускаем: {} (код: {}, тип: {})", path, statusCode, result.getContentType());
+                generations.forEach(site -> savePage(site, path, statusCode, "", null));
                 return;
             }
 
-            Document document = response.parse();
-            String content = document.html();
-
-            savePage(site, path, statusCode, content);
-
-            LemmaProcessingService self = applicationContext.getBean(LemmaProcessingService.class);
-            self.processLemmas(site, path, content);
+            Document document = result.parse();
+            ExtractedPage extracted = PageExtractor.extract(document, target.getSiteUrl());
+            String content = result.decode(document.charset());
+            Map<String, Integer> lemmas = lemmaProcessingService.extractLemmas(extracted.getText());
+            Long simhash = SimHash.of(extracted.getText());
+
+            List<PageRecord> records = new ArrayList<>(generations.size());
+            for (SiteEntity site : generations) {
+                PageRecord record = new PageRecord(site, path, statusCode, content, extracted.getTitle(),
+                        extracted.getText(), lemmas, result.getEtag(), result.getLastModified(), result.contentHash());
+                record.setSimhash(simhash);
+                records.add(record);
+            }
+            pageWriter.write(records);
+            generations.forEach(site -> lemmaDictionary.flush(site.getId()));
 
-            log.info("✅ Успешно проиндексирована одиночная страница: {}{}", site.getUrl(), path);
+            log.info("✅ Успешно проиндексирована одиночная страница: {}", fullUrl);
 
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Ожидание слота загрузки прервано", e);
         } catch (IOException e) {
             log.warn("⚠️ Ошибка загрузки {}: {}", path, e.getMessage());
-            savePage(site, path, 0, "");
+            recordFailure(generations, path);
             throw e;
         } catch (Exception e) {
             log.error("💥 Критическая ошибка при обработке {}", path, e);
-            savePage(site, path, 0, "");
+            recordFailure(generations, path);
             throw e;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Временная ошибка не стирает страницу, по которой идёт поиск: как и при инкрементальном
+     * обходе, сохранённая страница текущего поколения остаётся. Код ошибки записывается
+     * в строящееся поколение и для страниц, которых ещё нет.
+     */
+    private void recordFailure(List<SiteEntity> generations, String path) {
+        for (SiteEntity site : generations) {
+            if (!site.isActive() || !pageRepository.existsBySiteIdAndPath(site.getId(), path)) {
+                savePage(site, path, 0, "", null);
+            }
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package searchengine.services;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.CrawlerConfig;
+import searchengine.models.SiteEntity;
+import searchengine.repositories.BulkIndexRepository;
+import searchengine.repositories.SiteRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Словарь лемм сайтов на время индексации: кэш «лемма → id» и накопители
+ * приращений частот. Страницы одного сайта обрабатываются параллельно без общей
+ * блокировки: новые леммы создаются одним запросом, а частоты копятся в памяти
+ * и периодически сбрасываются в таблицу {@code lemma}.
+ * <p>
+ * Запись индекса страниц ({@link #indexing}) и удаление неиспользуемых лемм
+ * ({@link #removeUnusedLemmas}) одного сайта взаимно исключают друг друга:
+ * иначе удаление могло бы забрать лемму, id которой уже выдан странице.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LemmaDictionary {
+
+    private final BulkIndexRepository bulkIndexRepository;
+    private final CrawlerConfig crawlerConfig;
+    private final PlatformTransactionManager transactionManager;
+    private final SiteRepository siteRepository;
+    private final SearchResultCache searchResultCache;
+
+    private final Map<Integer, SiteLemmas> sites = new ConcurrentHashMap<>();
+    private final Map<Integer, ReadWriteLock> locks = new ConcurrentHashMap<>();
+    private TransactionTemplate newTransaction;
+    private ScheduledExecutorService flusher;
+
+    @PostConstruct
+    public void start() {
+        // Новые леммы фиксируются сразу: кэш не должен ссылаться на строки из откатившейся транзакции
+        newTransaction = new TransactionTemplate(transactionManager);
+        newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        long interval = Math.max(100, crawlerConfig.getLemmaFlushMs());
+        flusher = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("lemma-flusher").setDaemon(true).build());
+        flusher.scheduleWithFixedDelay(this::flushAll, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdownNow();
+        flushAll();
+    }
+
+    /**
+     * Выполняет запись индекса страниц сайтов — от получения id лемм через {@link #resolveIds}
+     * до фиксации строк {@code search_index} и передачи приращений частот в {@link #addFrequencies}. Записи выполняются параллельно друг другу;
+     * блокировки сайтов берутся по возрастанию id, поэтому пачки нескольких сайтов не взаимоблокируются.
+     */
+    public <T> T indexing(Collection<Integer> siteIds, Supplier<T> action) {
+        List<ReadWriteLock> held = new ArrayList<>();
+        try {
+            for (int siteId : new TreeSet<>(siteIds)) {
+                ReadWriteLock lock = lock(siteId);
+                lock.readLock().lock();
+                held.add(lock);
+            }
+            return action.get();
+        } finally {
+            held.forEach(lock -> lock.readLock().unlock());
+        }
+    }
+
+    /**
+     * Удаляет леммы сайта, которые больше не встречаются ни на одной странице, и забывает
+     * кэш сайта. Перед удалением сбрасывает накопленные частоты. Ждёт завершения начатых
+     * записей индекса сайта и не пускает новые, пока не закончит.
+     *
+     * @return число удалённых лемм
+     */
+    public int removeUnusedLemmas(int siteId) {
+        ReadWriteLock lock = lock(siteId);
+        lock.writeLock().lock();
+        try {
+            flush(siteId);
+            int removed = bulkIndexRepository.deleteUnusedLemmas(siteId);
+            evict(siteId);
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Map<String, Integer> resolveIds(int siteId, Collection<String> lemmas) {
+        SiteLemmas siteLemmas = sites.computeIfAbsent(siteId, id -> new SiteLemmas());
+        Map<String, Integer> result = new HashMap<>(lemmas.size() * 2);
+        List<String> missing = new ArrayList<>();
+
+        for (String lemma : lemmas) {
+            Integer id = siteLemmas.ids.get(lemma);
+            if (id != null) {
+                result.put(lemma, id);
+            } else {
+                missing.add(lemma);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            Map<String, Integer> created = newTransaction.execute(
+                    status -> bulkIndexRepository.findOrInsertLemmas(siteId, missing));
+            siteLemmas.ids.putAll(created);
+            result.putAll(created);
+        }
+        return result;
+    }
+
+    /**
+     * Приращения добавляются под блокировкой записи сайта в словаре, чтобы {@link #evict}
+     * не потерял приращения, пришедшие во время его сброса.
+     */
+    public void addFrequencies(int siteId, Map<Integer, Integer> deltas) {
+        sites.compute(siteId, (id, siteLemmas) -> {
+            SiteLemmas target = siteLemmas != null ? siteLemmas : new SiteLemmas();
+            deltas.forEach((lemmaId, delta) ->
+                    target.deltas.computeIfAbsent(lemmaId, key -> new AtomicInteger()).addAndGet(delta));
+            return target;
+        });
+    }
+
+    /**
+     * Записывает накопленные частоты сайта в БД. Если сайт в поиске, ответы по нему
+     * в кэше поиска после этого устаревают.
+     */
+    public void flush(int siteId) {
+        SiteLemmas siteLemmas = sites.get(siteId);
+        if (siteLemmas == null) {
+            return;
+        }
+
+        Map<Integer, Integer> pending = drain(siteLemmas);
+        if (!pending.isEmpty() && !write(siteId, pending)) {
+            addFrequencies(siteId, pending);
+        }
+    }
+
+    public void flushAll() {
+        sites.keySet().forEach(this::flush);
+    }
+
+    /**
+     * Сбрасывает несброшенные частоты сайта и забывает его кэш. Вызывается при удалении
+     * лемм сайта из БД. Сброс и удаление выполняются атомарно относительно {@link #addFrequencies};
+     * если записать частоты не удалось, они остаются в словаре до следующего сброса.
+     */
+    public void evict(int siteId) {
+        sites.compute(siteId, (id, siteLemmas) -> {
+            if (siteLemmas == null) {
+                return null;
+            }
+            Map<Integer, Integer> pending = drain(siteLemmas);
+            if (pending.isEmpty() || write(siteId, pending)) {
+                return null;
+            }
+            SiteLemmas kept = new SiteLemmas();
+            pending.forEach((lemmaId, delta) -> kept.deltas.put(lemmaId, new AtomicInteger(delta)));
+            return kept;
+        });
+    }
+
+    private ReadWriteLock lock(int siteId) {
+        return locks.computeIfAbsent(siteId, id -> new ReentrantReadWriteLock());
+    }
+
+    private Map<Integer, Integer> drain(SiteLemmas siteLemmas) {
+        Map<Integer, Integer> pending = new TreeMap<>();
+        siteLemmas.deltas.forEach((lemmaId, delta) -> {
+            int value = delta.getAndSet(0);
+            if (value != 0) {
+                pending.put(lemmaId, value);
+            }
+        });
+        return pending;
+    }
+
+    private boolean write(int siteId, Map<Integer, Integer> pending) {
+        try {
+            bulkIndexRepository.addFrequencies(pending);
+            log.trace("Сброшены частоты {} лемм сайта {}", pending.size(), siteId);
+        } catch (Exception e) {
+            log.error("Ошибка сброса частот лемм сайта {}", siteId, e);
+            return false;
+        }
+        siteRepository.findById(siteId)
+                .filter(SiteEntity::isActive)
+                .ifPresent(site -> searchResultCache.invalidateSite(site.getUrl()));
+        return true;
+    }
+
+    private static class SiteLemmas {
+        private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+        private final Map<Integer, AtomicInteger> deltas = new ConcurrentHashMap<>();
+    }
+}
@@ -23,16 +23,30 @@ public class LemmaProcessor {
     private static final Pattern LATIN_PATTERN = Pattern.compile(".*[a-zA-Z].*");
 
     public Map<String, Integer> extractLemmas(String content) {
-        Map<String, Integer> lemmas = new HashMap<>();
-
         if (content == null || content.isEmpty()) {
-            return lemmas;
+            return new HashMap<>();
         }
 
         try {
             Document doc = Jsoup.parse(content);
-            String text = doc.body().text();
+            return extractLemmasFromText(doc.body().text());
+        } catch (Exception e) {
+            log.error("Ошибка парсинга HTML для извлечения текста: ", e);
+            return new HashMap<>();
+        }
+    }
 
+    /**
+     * Леммы уже извлечённого видимого текста страницы, без повторного разбора HTML.
+     */
+    public Map<String, Integer> extractLemmasFromText(String text) {
+        Map<String, Integer> lemmas = new HashMap<>();
+
+        if (text == null || text.isEmpty()) {
+            return lemmas;
+        }
+
+        try {
             String[] words = text.replaceAll("\\s+", " ").trim().split("\\s+");
             for (String word : words) {
                 if (word.length() < 3 || word.matches(".*\\d.*")) {
@@ -50,7 +64,7 @@ public class LemmaProcessor {
                 }
             }
         } catch (Exception e) {
-            log.error("Ошибка парсинга HTML для извлечения текста: ", e);
+            log.error("Ошибка извлечения лемм из текста: ", e);
         }
         return lemmas;
     }
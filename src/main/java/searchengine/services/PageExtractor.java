@@ -0,0 +1,33 @@
+package searchengine.services;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Извлекает из разобранного документа всё, что нужно индексации, за один проход:
+ * после этого DOM больше не нужен, а лемматизация и поиск работают с готовым текстом.
+ */
+public final class PageExtractor {
+
+    private PageExtractor() {
+    }
+
+    public static ExtractedPage extract(Document document, String baseUrl) {
+        String text = document.body() != null ? document.body().text() : "";
+        return new ExtractedPage(document.title().trim(), text, extractLinks(document, baseUrl));
+    }
+
+    public static Set<String> extractLinks(Document document, String baseUrl) {
+        Set<String> links = new HashSet<>();
+        for (Element element : document.select("a[href]")) {
+            String path = UrlCanonicalizer.internalPath(element.absUrl("href"), baseUrl);
+            if (path != null) {
+                links.add(path);
+            }
+        }
+        return links;
+    }
+}
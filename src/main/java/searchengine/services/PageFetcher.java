@@ -0,0 +1,253 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.Header;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.CookieSpecs;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerConfig;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Загрузчик страниц на пуле HTTP-соединений с keep-alive и распаковкой gzip/deflate.
+ * Вызывается из стадии загрузки {@link CrawlPipeline}, у которой свой пул потоков,
+ * отдельный от потоков разбора и лемматизации.
+ * <p>
+ * Тело читается только у HTML-ответов с кодом 200 и не больше {@code maxBodySizeKb}:
+ * решение принимается по заголовкам, а лишние байты не скачиваются — соединение обрывается.
+ * <p>
+ * Время ответа считается от отправки запроса по полученному из пула соединению:
+ * ожидание свободного соединения — задержка краулера, а не сервера.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PageFetcher {
+
+    private static final String ACCEPT_HTML = "text/html,application/xhtml+xml;q=0.9,*/*;q=0.8";
+    private static final byte[] EMPTY_BODY = new byte[0];
+    private static final int MAX_INITIAL_BUFFER = 64 * 1024;
+    private static final String SENT_AT = "searchengine.sentAt";
+
+    private final CrawlerConfig crawlerConfig;
+
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient httpClient;
+
+    @PostConstruct
+    public void init() {
+        connectionManager = new PoolingHttpClientConnectionManager(60, TimeUnit.SECONDS);
+        connectionManager.setMaxTotal(crawlerConfig.getMaxConnectionsTotal());
+        connectionManager.setDefaultMaxPerRoute(crawlerConfig.getMaxConnectionsPerHost());
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(crawlerConfig.getConnectTimeoutMs())
+                .setConnectionRequestTimeout(crawlerConfig.getConnectTimeoutMs())
+                .setSocketTimeout(crawlerConfig.getReadTimeoutMs())
+                .setCookieSpec(CookieSpecs.STANDARD)
+                .build();
+
+        // Accept-Encoding и распаковка gzip/deflate включены в HttpClientBuilder по умолчанию
+        httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE)
+                .setRequestExecutor(new TimedRequestExecutor())
+                .setUserAgent(crawlerConfig.getUserAgent())
+                .evictIdleConnections(30, TimeUnit.SECONDS)
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            log.warn("Ошибка закрытия HTTP-клиента: {}", e.getMessage());
+        }
+    }
+
+    public FetchResult fetch(String url) throws IOException {
+        return fetch(url, null, null);
+    }
+
+    /**
+     * Условная загрузка: при известных ETag / Last-Modified сервер может ответить 304
+     * без тела, если страница не менялась.
+     */
+    public FetchResult fetch(String url, String etag, String lastModified) throws IOException {
+        return execute(url, ACCEPT_HTML, etag, lastModified, true, (long) crawlerConfig.getMaxBodySizeKb() * 1024);
+    }
+
+    /**
+     * Загрузка служебного файла сайта (robots.txt, sitemap) любого типа.
+     * Тело читается только при коде 200 и не длиннее {@code maxBytes}.
+     */
+    public FetchResult fetchResource(String url, long maxBytes) throws IOException {
+        return execute(url, "*/*", null, null, false, maxBytes);
+    }
+
+    private FetchResult execute(String url, String accept, String etag, String lastModified,
+                                boolean htmlOnly, long maxBytes) throws IOException {
+        HttpGet request = new HttpGet(url);
+        request.setHeader(HttpHeaders.ACCEPT, accept);
+        if (crawlerConfig.getReferrer() != null) {
+            request.setHeader(HttpHeaders.REFERER, crawlerConfig.getReferrer());
+        }
+        if (etag != null) {
+            request.setHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        }
+        if (lastModified != null) {
+            request.setHeader(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+        }
+
+        HttpClientContext context = HttpClientContext.create();
+        long startedAt = System.nanoTime();
+        try (CloseableHttpResponse response = httpClient.execute(request, context)) {
+            Object sentAt = context.getAttribute(SENT_AT);
+            long responseTimeMs = TimeUnit.NANOSECONDS.toMillis(
+                    System.nanoTime() - (sentAt != null ? (long) sentAt : startedAt));
+            int statusCode = response.getStatusLine().getStatusCode();
+            long retryAfterMs = retryAfterMs(headerValue(response, HttpHeaders.RETRY_AFTER));
+            String responseEtag = headerValue(response, HttpHeaders.ETAG);
+            String responseLastModified = headerValue(response, HttpHeaders.LAST_MODIFIED);
+            HttpEntity entity = response.getEntity();
+            if (entity == null) {
+                return new FetchResult(finalUrl(url, context), statusCode, "", null, EMPTY_BODY,
+                        responseEtag, responseLastModified, false, responseTimeMs, retryAfterMs);
+            }
+
+            ContentType contentType = ContentType.getLenient(entity);
+            String mimeType = contentType != null ? contentType.getMimeType().toLowerCase() : "";
+            String charset = contentType != null && contentType.getCharset() != null
+                    ? contentType.getCharset().name()
+                    : null;
+
+            if (statusCode != 200 || htmlOnly && !FetchResult.isHtml(mimeType)) {
+                // Тело не нужно: ошибки и не-HTML сохраняются только с кодом ответа
+                request.abort();
+                return new FetchResult(finalUrl(url, context), statusCode, mimeType, charset, EMPTY_BODY,
+                        responseEtag, responseLastModified, false, responseTimeMs, retryAfterMs);
+            }
+
+            byte[] body = readBody(request, entity, maxBytes);
+            if (body == null) {
+                log.debug("Слишком большой ответ, загрузка прервана: {}", url);
+                return new FetchResult(finalUrl(url, context), statusCode, mimeType, charset, EMPTY_BODY,
+                        responseEtag, responseLastModified, true, responseTimeMs, retryAfterMs);
+            }
+            return new FetchResult(finalUrl(url, context), statusCode, mimeType, charset, body,
+                    responseEtag, responseLastModified, false, responseTimeMs, retryAfterMs);
+        }
+    }
+
+    /**
+     * Читает тело не длиннее {@code limit} байт. Возвращает {@code null}, как только
+     * предел превышен (по Content-Length или по фактически прочитанному), не дочитывая поток:
+     * закрытие потока дочитало бы ответ до конца ради повторного использования соединения,
+     * поэтому при превышении и при ошибке чтения запрос прерывается, а соединение закрывается.
+     * Буфер растёт по мере чтения: Content-Length задаёт только начальный размер, не больше
+     * {@value #MAX_INITIAL_BUFFER} байт.
+     */
+    private byte[] readBody(HttpGet request, HttpEntity entity, long limit) throws IOException {
+        long declared = entity.getContentLength();
+        if (limit > 0 && declared > limit) {
+            request.abort();
+            return null;
+        }
+
+        InputStream in = entity.getContent();
+        boolean complete = false;
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(
+                    declared > 0 ? (int) Math.min(declared, MAX_INITIAL_BUFFER) : 16 * 1024);
+            byte[] buffer = new byte[8192];
+            long total = 0;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                total += read;
+                if (limit > 0 && total > limit) {
+                    return null;
+                }
+                out.write(buffer, 0, read);
+            }
+            complete = true;
+            return out.toByteArray();
+        } finally {
+            if (complete) {
+                in.close();
+            } else {
+                request.abort();
+            }
+        }
+    }
+
+    /**
+     * {@code Retry-After} в миллисекундах: число секунд или HTTP-дата; -1, если заголовка нет
+     * или он не разобран.
+     */
+    private long retryAfterMs(String value) {
+        if (value == null || value.isBlank()) {
+            return -1;
+        }
+        try {
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            Date date = DateUtils.parseDate(value.trim());
+            return date != null ? Math.max(0, date.getTime() - System.currentTimeMillis()) : -1;
+        }
+    }
+
+    private String headerValue(CloseableHttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+        return header != null ? header.getValue() : null;
+    }
+
+    /**
+     * Запоминает момент отправки запроса: исполнитель вызывается, когда соединение
+     * уже получено из пула и установлено. При редиректах остаётся время последнего запроса.
+     */
+    private static class TimedRequestExecutor extends HttpRequestExecutor {
+        @Override
+        public HttpResponse execute(HttpRequest request, HttpClientConnection connection, HttpContext context)
+                throws IOException, HttpException {
+            context.setAttribute(SENT_AT, System.nanoTime());
+            return super.execute(request, connection, context);
+        }
+    }
+
+    private String finalUrl(String url, HttpClientContext context) {
+        List<URI> redirects = context.getRedirectLocations();
+        if (redirects == null || redirects.isEmpty()) {
+            return url;
+        }
+        return redirects.get(redirects.size() - 1).toString();
+    }
+}
@@ -0,0 +1,53 @@
+package searchengine.services;
+
+import lombok.Getter;
+import searchengine.dto.indexing.IndexPagesJobStatus;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Задание на индексацию списка страниц. Страница, которая уже стоит в очереди
+ * по другому заданию, не загружается повторно: задание ждёт общего результата.
+ */
+public class PageIndexJob {
+
+    @Getter
+    private final String id = UUID.randomUUID().toString();
+    private final Map<String, String> errors = new LinkedHashMap<>();
+    private int total;
+    private int pending;
+    private int coalesced;
+    private int indexed;
+    private int failed;
+
+    synchronized void queued(boolean merged) {
+        total++;
+        pending++;
+        if (merged) {
+            coalesced++;
+        }
+    }
+
+    synchronized void rejected(String url, String error) {
+        total++;
+        failed++;
+        errors.put(url, error);
+    }
+
+    synchronized void finished(String url, String error) {
+        pending--;
+        if (error == null) {
+            indexed++;
+        } else {
+            failed++;
+            errors.put(url, error);
+        }
+    }
+
+    public synchronized IndexPagesJobStatus toStatus() {
+        return new IndexPagesJobStatus(id, pending == 0, total, pending, coalesced, indexed, failed,
+                new LinkedHashMap<>(errors));
+    }
+}
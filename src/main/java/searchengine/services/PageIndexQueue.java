@@ -0,0 +1,139 @@
+package searchengine.services;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerConfig;
+import searchengine.exceptions.BadRequestException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Фоновая очередь индексации отдельных страниц. Повторные уведомления об одной странице
+ * схлопываются: пока страница ждёт в очереди, новые задания присоединяются к ней.
+ * Если страница уже загружается, она будет загружена ещё раз после текущей попытки —
+ * изменение, пришедшее во время загрузки, не теряется. Загрузка идёт через общий
+ * планировщик вежливости, поэтому не превышает темп обхода хоста.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PageIndexQueue {
+
+    private static final int JOB_TTL_HOURS = 1;
+    private static final int MAX_JOBS = 10000;
+
+    private final IndexingService indexingService;
+    private final CrawlerConfig crawlerConfig;
+
+    /**
+     * Страницы в очереди и в работе по каноническому адресу. Доступ — под блокировкой очереди.
+     */
+    private final Map<String, Task> tasks = new HashMap<>();
+    private final Cache<String, PageIndexJob> jobs = CacheBuilder.newBuilder()
+            .expireAfterWrite(JOB_TTL_HOURS, TimeUnit.HOURS)
+            .maximumSize(MAX_JOBS)
+            .build();
+    private ExecutorService workers;
+
+    @PostConstruct
+    public void start() {
+        workers = Executors.newFixedThreadPool(Math.max(1, crawlerConfig.getPageQueueThreads()),
+                new ThreadFactoryBuilder().setNameFormat("index-page-%d").setDaemon(true).build());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Ставит страницы в очередь и сразу возвращает задание. Адреса, которые нельзя
+     * проиндексировать, отмечаются в задании как неудачные с причиной.
+     */
+    public PageIndexJob submit(Collection<String> urls) {
+        PageIndexJob job = new PageIndexJob();
+        for (String url : urls) {
+            try {
+                enqueue(indexingService.resolvePage(url.trim()), job);
+            } catch (BadRequestException e) {
+                job.rejected(url, e.getMessage());
+            }
+        }
+        jobs.put(job.getId(), job);
+        return job;
+    }
+
+    public Optional<PageIndexJob> getJob(String id) {
+        return Optional.ofNullable(jobs.getIfPresent(id));
+    }
+
+    private synchronized void enqueue(PageTarget target, PageIndexJob job) {
+        String key = target.getUrl();
+        Task task = tasks.get(key);
+        if (task != null) {
+            task.jobs.add(job);
+            job.queued(!task.running);
+            return;
+        }
+        if (tasks.size() >= crawlerConfig.getPageQueueCapacity()) {
+            throw new BadRequestException("Очередь индексации страниц переполнена, попробуйте позже");
+        }
+
+        task = new Task(key, target);
+        task.jobs.add(job);
+        job.queued(false);
+        tasks.put(key, task);
+        Task queued = task;
+        workers.execute(() -> run(queued));
+    }
+
+    private void run(Task task) {
+        List<PageIndexJob> waiting;
+        synchronized (this) {
+            task.running = true;
+            waiting = task.jobs;
+            task.jobs = new ArrayList<>();
+        }
+
+        String error = null;
+        try {
+            indexingService.indexPage(task.target);
+        } catch (Exception e) {
+            log.warn("⚠️ Не удалось проиндексировать страницу {}: {}", task.key, e.getMessage());
+            error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        }
+
+        synchronized (this) {
+            task.running = false;
+            for (PageIndexJob job : waiting) {
+                job.finished(task.key, error);
+            }
+            if (task.jobs.isEmpty()) {
+                tasks.remove(task.key);
+            } else {
+                workers.execute(() -> run(task));
+            }
+        }
+    }
+
+    private static class Task {
+        private final String key;
+        private final PageTarget target;
+        private List<PageIndexJob> jobs = new ArrayList<>();
+        private boolean running;
+
+        Task(String key, PageTarget target) {
+            this.key = key;
+            this.target = target;
+        }
+    }
+}
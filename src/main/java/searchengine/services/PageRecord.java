@@ -0,0 +1,62 @@
+package searchengine.services;
+
+import lombok.Getter;
+import lombok.Setter;
+import searchengine.models.SiteEntity;
+
+import java.util.Map;
+
+/**
+ * Страница, подготовленная к записи. {@code lemmas == null} означает, что
+ * страница сохраняется без индекса (ошибка загрузки, не HTML и т.п.),
+ * а {@code removed} — что страница с известным {@code pageId} удаляется вместе с индексом.
+ * Страница с {@code canonicalPath} — почти-дубликат другой страницы сайта и тоже сохраняется без индекса.
+ */
+@Getter
+public class PageRecord {
+    private final SiteEntity site;
+    private final String path;
+    private final int code;
+    private final String content;
+    private final String title;
+    private final String text;
+    private final Map<String, Integer> lemmas;
+    private final String etag;
+    private final String lastModified;
+    private final String contentHash;
+    private final boolean removed;
+
+    @Setter
+    private int pageId;
+    @Setter
+    private Long simhash;
+    @Setter
+    private String canonicalPath;
+
+    public PageRecord(SiteEntity site, String path, int code, String content, String title, String text,
+                      Map<String, Integer> lemmas, String etag, String lastModified, String contentHash) {
+        this(site, path, code, content, title, text, lemmas, etag, lastModified, contentHash, false);
+    }
+
+    private PageRecord(SiteEntity site, String path, int code, String content, String title, String text,
+                       Map<String, Integer> lemmas, String etag, String lastModified, String contentHash,
+                       boolean removed) {
+        this.site = site;
+        this.path = path;
+        this.code = code;
+        this.content = content;
+        this.title = title;
+        this.text = text;
+        this.lemmas = lemmas;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.contentHash = contentHash;
+        this.removed = removed;
+    }
+
+    public static PageRecord removed(SiteEntity site, String path, int pageId, int code) {
+        PageRecord record = new PageRecord(site, path, code, null, null, null, null, null, null, null, true);
+        record.setPageId(pageId);
+        return record;
+    }
+}
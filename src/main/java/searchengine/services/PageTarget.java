@@ -0,0 +1,18 @@
+package searchengine.services;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Страница для отдельной индексации: канонический адрес сайта и путь страницы.
+ */
+@Getter
+@RequiredArgsConstructor
+public class PageTarget {
+    private final String siteUrl;
+    private final String path;
+
+    public String getUrl() {
+        return SiteCrawl.resolveFullUrl(siteUrl, path);
+    }
+}
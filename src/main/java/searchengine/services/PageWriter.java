@@ -0,0 +1,149 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.models.SiteEntity;
+import searchengine.repositories.BulkIndexRepository;
+import searchengine.repositories.BulkPageRepository;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+
+/**
+ * Групповая запись страниц и их индекса. Пачка страниц от стадии записи
+ * конвейера сохраняется одной транзакцией: страницы — одним upsert,
+ * индекс — одной вставкой на всю пачку, без повторного чтения страниц, по идентификаторам из upsert.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PageWriter {
+
+    private final BulkPageRepository bulkPageRepository;
+    private final BulkIndexRepository bulkIndexRepository;
+    private final LemmaProcessingService lemmaProcessingService;
+    private final LemmaDictionary lemmaDictionary;
+    private final PlatformTransactionManager transactionManager;
+    private final SearchResultCache searchResultCache;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Записывает пачку страниц и проставляет им {@code pageId}.
+     * Повторы одной страницы схлопываются: сохраняется последняя запись.
+     * Частота леммы — число страниц с ней: страницы прежнего индекса перезаписанных
+     * и удалённых страниц вычитаются, страницы нового индекса прибавляются.
+     */
+    public void write(List<PageRecord> records) {
+        Map<Integer, Map<String, PageRecord>> bySite = new HashMap<>();
+        for (PageRecord record : records) {
+            bySite.computeIfAbsent(record.getSite().getId(), id -> new LinkedHashMap<>())
+                    .put(record.getPath(), record);
+        }
+
+        List<PageRecord> pages = new ArrayList<>(records.size());
+        List<PageRecord> removed = new ArrayList<>();
+        bySite.values().forEach(sitePages -> sitePages.values()
+                .forEach(page -> (page.isRemoved() ? removed : pages).add(page)));
+
+        // Id лемм должны остаться действительными до фиксации индекса, а приращения частот — попасть
+        // в словарь до сброса: удаление неиспользуемых лемм ждёт, пока запись не закончится целиком
+        Map<PageRecord, Map<Integer, Integer>> lemmaCounts = new IdentityHashMap<>();
+        lemmaDictionary.indexing(bySite.keySet(), () -> {
+            for (PageRecord page : pages) {
+                if (page.getLemmas() != null) {
+                    lemmaCounts.put(page, lemmaProcessingService.resolveLemmas(page.getSite(), page.getLemmas()));
+                }
+            }
+            Map<Integer, Map<Integer, Integer>> oldCounts = transactionTemplate.execute(status -> {
+                savePages(pages, bySite);
+                Map<Integer, Map<Integer, Integer>> previous = replaceIndexes(pages, removed, lemmaCounts);
+                bulkPageRepository.deletePages(removed.stream().map(PageRecord::getPageId).toList());
+                return previous;
+            });
+
+            Map<Integer, PageRecord> byId = new HashMap<>();
+            pages.forEach(page -> byId.put(page.getPageId(), page));
+            removed.forEach(page -> byId.put(page.getPageId(), page));
+            oldCounts.forEach((pageId, counts) ->
+                    lemmaDictionary.addFrequencies(byId.get(pageId).getSite().getId(), perPage(counts.keySet(), -1)));
+            lemmaCounts.forEach((page, counts) ->
+                    lemmaDictionary.addFrequencies(page.getSite().getId(), perPage(counts.keySet(), 1)));
+            return null;
+        });
+
+        // Запись в строящееся поколение не меняет выдачу до его включения
+        records.stream().map(PageRecord::getSite).filter(SiteEntity::isActive)
+                .map(SiteEntity::getUrl).distinct().forEach(searchResultCache::invalidateSite);
+
+        log.trace("Записано {} страниц, из них с индексом: {}, удалено: {}",
+                pages.size(), lemmaCounts.size(), removed.size());
+    }
+
+    private void savePages(List<PageRecord> pages, Map<Integer, Map<String, PageRecord>> bySite) {
+        int size = pages.size();
+        List<Integer> siteIds = new ArrayList<>(size);
+        List<String> paths = new ArrayList<>(size);
+        List<Integer> codes = new ArrayList<>(size);
+        List<String> contents = new ArrayList<>(size);
+        List<String> titles = new ArrayList<>(size);
+        List<String> texts = new ArrayList<>(size);
+        List<String> etags = new ArrayList<>(size);
+        List<String> lastModified = new ArrayList<>(size);
+        List<String> contentHashes = new ArrayList<>(size);
+        List<Long> simhashes = new ArrayList<>(size);
+        List<String> canonicalPaths = new ArrayList<>(size);
+        for (PageRecord page : pages) {
+            siteIds.add(page.getSite().getId());
+            paths.add(page.getPath());
+            codes.add(page.getCode());
+            boolean stored = page.getCode() == 200 && page.getContent() != null;
+            contents.add(stored ? page.getContent() : "");
+            titles.add(stored ? page.getTitle() : null);
+            texts.add(stored ? page.getText() : null);
+            etags.add(fitOrNull(page.getEtag(), 255));
+            lastModified.add(fitOrNull(page.getLastModified(), 64));
+            contentHashes.add(page.getContentHash());
+            simhashes.add(page.getSimhash());
+            canonicalPaths.add(page.getCanonicalPath());
+        }
+
+        bulkPageRepository.upsertPages(siteIds, paths, codes, contents, titles, texts, etags, lastModified,
+                contentHashes, simhashes, canonicalPaths, (siteId, path, pageId) -> bySite.get(siteId).get(path).setPageId(pageId));
+    }
+
+    private Map<Integer, Map<Integer, Integer>> replaceIndexes(List<PageRecord> pages, List<PageRecord> removed,
+                                                               Map<PageRecord, Map<Integer, Integer>> lemmaCounts) {
+        List<Integer> pageIds = new ArrayList<>(pages.size() + removed.size());
+        pages.forEach(page -> pageIds.add(page.getPageId()));
+        removed.forEach(page -> pageIds.add(page.getPageId()));
+        Map<Integer, Map<Integer, Integer>> previous = bulkIndexRepository.deleteIndexes(pageIds);
+
+        Map<Integer, Map<Integer, Float>> ranksByPage = new HashMap<>(lemmaCounts.size() * 2);
+        lemmaCounts.forEach((page, counts) -> {
+            Map<Integer, Float> ranks = new HashMap<>(counts.size() * 2);
+            counts.forEach((lemmaId, count) -> ranks.put(lemmaId, (float) count));
+            ranksByPage.put(page.getPageId(), ranks);
+        });
+        bulkIndexRepository.insertIndexes(ranksByPage);
+        return previous;
+    }
+
+    private static Map<Integer, Integer> perPage(Set<Integer> lemmaIds, int delta) {
+        Map<Integer, Integer> deltas = new HashMap<>(lemmaIds.size() * 2);
+        lemmaIds.forEach(lemmaId -> deltas.put(lemmaId, delta));
+        return deltas;
+    }
+
+    private static String fitOrNull(String value, int maxLength) {
+        return value != null && value.length() <= maxLength ? value : null;
+    }
+}
@@ -0,0 +1,113 @@
+package searchengine.services;
+
+import com.google.common.collect.Queues;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import searchengine.dto.indexing.PipelineStageStats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Стадия конвейера индексации: ограниченная очередь и собственный набор потоков.
+ * Когда очередь заполнена, {@link #submit} блокирует вызывающую стадию — так
+ * медленная стадия сдерживает предыдущие, а не накапливает работу в памяти.
+ * Обработчик получает элементы пачками размером до {@code batchSize}.
+ */
+@Slf4j
+public class PipelineStage<T> {
+
+    private final String name;
+    private final int workers;
+    private final int capacity;
+    private final int batchSize;
+    private final long batchTimeoutMs;
+    private final Consumer<List<T>> handler;
+    private final BlockingQueue<T> queue;
+    private final List<Thread> threads = new ArrayList<>();
+
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder busyNanos = new LongAdder();
+    private volatile long startedAt;
+
+    public PipelineStage(String name, int workers, int capacity, int batchSize, long batchTimeoutMs,
+                         Consumer<List<T>> handler) {
+        this.name = name;
+        this.workers = Math.max(1, workers);
+        this.capacity = Math.max(1, capacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.batchTimeoutMs = batchTimeoutMs;
+        this.handler = handler;
+        this.queue = new ArrayBlockingQueue<>(this.capacity);
+    }
+
+    public static <T> PipelineStage<T> perItem(String name, int workers, int capacity, Consumer<T> handler) {
+        return new PipelineStage<>(name, workers, capacity, 1, 0, batch -> batch.forEach(handler));
+    }
+
+    public void start() {
+        startedAt = System.nanoTime();
+        ThreadFactory threadFactory = new ThreadFactoryBuilder()
+                .setNameFormat("pipeline-" + name + "-%d")
+                .setDaemon(true)
+                .build();
+        for (int i = 0; i < workers; i++) {
+            Thread thread = threadFactory.newThread(this::runWorker);
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    public void stop() {
+        threads.forEach(Thread::interrupt);
+    }
+
+    public void submit(T item) throws InterruptedException {
+        queue.put(item);
+    }
+
+    public PipelineStageStats getStats() {
+        long elapsedNanos = Math.max(1, System.nanoTime() - startedAt);
+        long done = processed.sum();
+        double throughput = done / (elapsedNanos / 1_000_000_000d);
+        double utilization = busyNanos.sum() / ((double) elapsedNanos * workers);
+        return new PipelineStageStats(name, workers, queue.size(), capacity, done, failed.sum(),
+                throughput, Math.min(1d, utilization));
+    }
+
+    private void runWorker() {
+        List<T> batch = new ArrayList<>(batchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+                if (batchSize > 1) {
+                    Queues.drain(queue, batch, batchSize - 1, batchTimeoutMs, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (batch.isEmpty()) {
+                continue;
+            }
+
+            long started = System.nanoTime();
+            try {
+                handler.accept(batch);
+                processed.add(batch.size());
+            } catch (Exception e) {
+                failed.add(batch.size());
+                log.error("Ошибка на стадии {} при обработке {} элементов", name, batch.size(), e);
+            } finally {
+                busyNanos.add(System.nanoTime() - started);
+                batch.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package searchengine.services;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerConfig;
+import searchengine.dto.indexing.HostCrawlState;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Планировщик вежливого обхода: задерживает запросы к хосту, а не потоки.
+ * Каждый запрос резервирует ближайший свободный слот своего хоста и
+ * помещается в очередь с задержкой; поток-диспетчер выпускает его, когда слот наступил.
+ * Выпущенный запрос выполняется в отдельном пуле: действие может блокироваться
+ * (например, на заполненной очереди загрузки), но выпуск запросов к другим хостам не ждёт.
+ * <p>
+ * Интервал между запросами и допустимое число одновременных запросов к хосту
+ * подстраиваются по ответам (AIMD): пока задержка ответа не растёт, а доля ошибок
+ * не выше {@code maxErrorRate}, интервал уменьшается на {@code delayStepMs}, а параллельность
+ * растёт на единицу за «окно» — столько успешных ответов, сколько сейчас допустимо одновременных запросов;
+ * 429, 5xx, тайм-ауты и {@code Retry-After} вдвое сокращают параллельность и удваивают интервал.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PolitenessScheduler {
+
+    private static final long MAX_RETRY_AFTER_MS = TimeUnit.MINUTES.toMillis(10);
+    private static final long BACKOFF_INTERVAL_MS = 1000;
+    private static final double LATENCY_TOLERANCE = 1.5;
+    private static final double FAST_WEIGHT = 0.3;
+    private static final double SLOW_WEIGHT = 0.05;
+    private static final double ERROR_RATE_WEIGHT = 0.1;
+
+    private final CrawlerConfig crawlerConfig;
+
+    private final Map<String, HostSlot> hosts = new ConcurrentHashMap<>();
+    private final DelayQueue<DelayedRequest> delayQueue = new DelayQueue<>();
+    private Thread dispatcher;
+    private ExecutorService releaser;
+
+    @PostConstruct
+    public void start() {
+        releaser = Executors.newCachedThreadPool(
+                new ThreadFactoryBuilder().setNameFormat("politeness-release-%d").setDaemon(true).build());
+        dispatcher = new Thread(this::dispatchLoop, "politeness-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+        }
+        if (releaser != null) {
+            releaser.shutdownNow();
+        }
+    }
+
+    public void schedule(String host, Runnable request) {
+        schedule(host, null, request, null);
+    }
+
+    /**
+     * Запрос, который можно отменить вместе с остальными запросами владельца через {@link #cancel}.
+     * При отмене вместо {@code request} выполняется {@code onCancel}.
+     */
+    public void schedule(String host, Object owner, Runnable request, Runnable onCancel) {
+        HostSlot slot = hostSlot(host);
+        long fireAt = slot.reserve();
+        delayQueue.put(new DelayedRequest(slot, fireAt, owner, request, onCancel));
+    }
+
+    /**
+     * Сколько запросов к хосту можно держать одновременно.
+     */
+    public int concurrencyLimit(String host) {
+        return hostSlot(host).getConcurrencyLimit();
+    }
+
+    /**
+     * Crawl-delay из robots.txt: интервал между запросами к хосту не опускается ниже него.
+     */
+    public void applyCrawlDelay(String host, long crawlDelayMs) {
+        hostSlot(host).raiseMinDelay(crawlDelayMs);
+    }
+
+    /**
+     * Учитывает ответ хоста: код, время до получения заголовков и {@code Retry-After}
+     * (в миллисекундах, отрицательное — заголовка не было).
+     */
+    public void onResponse(String host, int statusCode, long latencyMs, long retryAfterMs) {
+        HostSlot slot = hostSlot(host);
+        if (statusCode == 429 || statusCode >= 500) {
+            slot.backOff(Math.min(retryAfterMs, MAX_RETRY_AFTER_MS));
+        } else {
+            slot.succeed(latencyMs);
+        }
+    }
+
+    /**
+     * Учитывает запрос, не получивший ответа: тайм-аут или обрыв соединения.
+     */
+    public void onFailure(String host) {
+        hostSlot(host).backOff(-1);
+    }
+
+    /**
+     * Снимает ожидающие запросы владельца, не выполняя их. Используется при остановке обхода:
+     * запросы других владельцев (например, индексации отдельных страниц) ждут свои слоты дальше.
+     */
+    public void cancel(Object owner) {
+        int cancelled = 0;
+        for (DelayedRequest request : delayQueue) {
+            if (request.owner == owner && delayQueue.remove(request)) {
+                request.slot.queueDepth.decrementAndGet();
+                cancelled++;
+                if (request.onCancel != null) {
+                    request.onCancel.run();
+                }
+            }
+        }
+        log.debug("Отменено {} ожидающих запросов", cancelled);
+    }
+
+    public List<HostCrawlState> getHostStates() {
+        List<HostCrawlState> states = new ArrayList<>();
+        for (HostSlot slot : hosts.values()) {
+            states.add(slot.toState());
+        }
+        return states;
+    }
+
+    public static String hostOf(String url) {
+        try {
+            return new URL(url).getHost().toLowerCase();
+        } catch (MalformedURLException e) {
+            return url;
+        }
+    }
+
+    private void dispatchLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                dispatch(delayQueue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void dispatch(DelayedRequest request) {
+        request.slot.queueDepth.decrementAndGet();
+        releaser.execute(() -> {
+            try {
+                request.action.run();
+            } catch (Exception e) {
+                log.error("Ошибка запуска запроса к хосту {}", request.slot.host, e);
+            }
+        });
+    }
+
+    private HostSlot hostSlot(String host) {
+        return hosts.computeIfAbsent(host, name -> new HostSlot(name, crawlerConfig));
+    }
+
+    /**
+     * Состояние хоста и его AIMD-регулятор. Задержка ответа сравнивается с собственной
+     * медленной средней хоста: «задержка не растёт» — быстрая средняя не выше медленной
+     * более чем в {@link #LATENCY_TOLERANCE} раз. Доля ошибок — экспоненциальная средняя
+     * по всем ответам хоста; пока она выше порога, темп не наращивается.
+     */
+    static class HostSlot {
+        private final String host;
+        private final AtomicInteger queueDepth = new AtomicInteger();
+        private double minDelayMs;
+        private double maxDelayMs;
+        private final double delayStepMs;
+        private final int minConcurrency;
+        private final int maxConcurrency;
+        private final double maxErrorRate;
+
+        private long nextAllowedAt;
+        private long backoffUntil;
+        private long lastBackOffAt;
+        private double delayMs;
+        private double concurrency;
+        private double fastLatencyMs = -1;
+        private double slowLatencyMs = -1;
+        private double errorRate;
+
+        HostSlot(String host, CrawlerConfig config) {
+            this.host = host;
+            this.minDelayMs = Math.max(0, config.getDelayMinMs());
+            this.maxDelayMs = Math.max(minDelayMs, config.getDelayMaxMs());
+            this.delayStepMs = Math.max(1, config.getDelayStepMs());
+            this.maxErrorRate = Math.max(0, config.getMaxErrorRate());
+            // Больше, чем соединений к хосту в пуле, запросы будут ждать соединения, а не сервера
+            this.maxConcurrency = Math.max(1,
+                    Math.min(config.getMaxConcurrentPagesPerSite(), config.getMaxConnectionsPerHost()));
+            this.minConcurrency = Math.max(1, Math.min(maxConcurrency, config.getMinConcurrentPagesPerSite()));
+            // Начинаем со средней задержки прежнего случайного интервала и минимальной параллельности
+            this.delayMs = (minDelayMs + maxDelayMs) / 2;
+            this.concurrency = minConcurrency;
+        }
+
+        synchronized long reserve() {
+            long fireAt = Math.max(System.currentTimeMillis(), Math.max(nextAllowedAt, backoffUntil));
+            nextAllowedAt = fireAt + (long) delayMs;
+            queueDepth.incrementAndGet();
+            return fireAt;
+        }
+
+        synchronized void raiseMinDelay(long delay) {
+            minDelayMs = Math.max(minDelayMs, delay);
+            maxDelayMs = Math.max(maxDelayMs, minDelayMs);
+            delayMs = Math.max(delayMs, minDelayMs);
+        }
+
+        synchronized int getConcurrencyLimit() {
+            return (int) concurrency;
+        }
+
+        synchronized void succeed(long latencyMs) {
+            errorRate *= 1 - ERROR_RATE_WEIGHT;
+            if (latencyMs >= 0) {
+                fastLatencyMs = average(fastLatencyMs, latencyMs, FAST_WEIGHT);
+                slowLatencyMs = average(slowLatencyMs, latencyMs, SLOW_WEIGHT);
+            }
+            if (errorRate > maxErrorRate || fastLatencyMs > slowLatencyMs * LATENCY_TOLERANCE) {
+                return;
+            }
+            double window = Math.floor(concurrency);
+            delayMs = Math.max(minDelayMs, delayMs - delayStepMs / window);
+            concurrency = Math.min(maxConcurrency, concurrency + 1 / window);
+        }
+
+        /**
+         * Мультипликативное снижение не чаще раза в секунду: ответы на запросы,
+         * отправленные до предыдущего снижения, не должны обрушить темп повторно.
+         */
+        synchronized void backOff(long retryAfterMs) {
+            long now = System.currentTimeMillis();
+            errorRate += ERROR_RATE_WEIGHT * (1 - errorRate);
+            if (retryAfterMs > 0) {
+                backoffUntil = Math.max(backoffUntil, now + retryAfterMs);
+            }
+            if (now - lastBackOffAt < BACKOFF_INTERVAL_MS) {
+                return;
+            }
+            lastBackOffAt = now;
+            concurrency = Math.max(minConcurrency, Math.floor(concurrency / 2));
+            delayMs = Math.min(maxDelayMs, Math.max(delayMs * 2, delayStepMs));
+            log.info("Хост {} перегружен: параллельность {}, интервал {} мс",
+                    host, (int) concurrency, (long) delayMs);
+        }
+
+        private static double average(double current, long sample, double weight) {
+            return current < 0 ? sample : current + weight * (sample - current);
+        }
+
+        synchronized HostCrawlState toState() {
+            return new HostCrawlState(host, nextAllowedAt, queueDepth.get(), (int) concurrency, (long) delayMs,
+                    Math.round(Math.max(0, fastLatencyMs)), errorRate,
+                    backoffUntil > System.currentTimeMillis() ? backoffUntil : 0);
+        }
+    }
+
+    private static class DelayedRequest implements Delayed {
+        private final HostSlot slot;
+        private final long fireAt;
+        private final Object owner;
+        private final Runnable action;
+        private final Runnable onCancel;
+
+        DelayedRequest(HostSlot slot, long fireAt, Object owner, Runnable action, Runnable onCancel) {
+            this.slot = slot;
+            this.fireAt = fireAt;
+            this.owner = owner;
+            this.action = action;
+            this.onCancel = onCancel;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(fireAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(fireAt, ((DelayedRequest) other).fireAt);
+        }
+    }
+}
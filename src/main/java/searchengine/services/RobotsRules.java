@@ -0,0 +1,211 @@
+package searchengine.services;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Правила robots.txt для нашего робота: Allow/Disallow с шаблонами {@code *} и {@code $},
+ * Crawl-delay и ссылки на sitemap. Берётся группа с нашим user-agent, если её нет — группа «*».
+ * Из подходящих правил действует самое длинное, при равной длине — Allow.
+ */
+public class RobotsRules {
+
+    private static final long MAX_CRAWL_DELAY_MS = TimeUnit.MINUTES.toMillis(1);
+
+    private final List<Rule> rules;
+    @Getter
+    private final long crawlDelayMs;
+    @Getter
+    private final List<String> sitemaps;
+    /**
+     * robots.txt не получен из-за ошибки сервера: сайт временно закрыт для обхода целиком.
+     */
+    @Getter
+    private final boolean unavailable;
+
+    private RobotsRules(List<Rule> rules, long crawlDelayMs, List<String> sitemaps, boolean unavailable) {
+        this.rules = rules;
+        this.crawlDelayMs = crawlDelayMs;
+        this.sitemaps = sitemaps;
+        this.unavailable = unavailable;
+    }
+
+    public static RobotsRules allowAll() {
+        return new RobotsRules(Collections.emptyList(), 0, Collections.emptyList(), false);
+    }
+
+    public static RobotsRules unavailable() {
+        return new RobotsRules(List.of(new Rule("/", false)), 0, Collections.emptyList(), true);
+    }
+
+    /**
+     * @param userAgent строка User-Agent робота; с {@code User-agent} группы без учёта регистра
+     *                  сравнивается её первое слово до «/» или пробела
+     */
+    public static RobotsRules parse(String text, String userAgent) {
+        String token = productToken(userAgent);
+        Group ours = new Group();
+        Group any = new Group();
+        List<String> sitemaps = new ArrayList<>();
+
+        List<String> agents = new ArrayList<>();
+        boolean inRules = false;
+        for (String rawLine : text.split("\r\n|\r|\n")) {
+            int comment = rawLine.indexOf('#');
+            String line = (comment >= 0 ? rawLine.substring(0, comment) : rawLine).trim();
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            String field = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+
+            switch (field) {
+                case "sitemap" -> {
+                    if (!value.isEmpty()) {
+                        sitemaps.add(value);
+                    }
+                }
+                case "user-agent" -> {
+                    if (inRules) {
+                        agents.clear();
+                        inRules = false;
+                    }
+                    agents.add(productToken(value));
+                }
+                case "allow", "disallow", "crawl-delay" -> {
+                    inRules = true;
+                    for (String agent : agents) {
+                        Group group = agent.equals("*") ? any
+                                : !token.isEmpty() && token.equals(agent) ? ours
+                                : null;
+                        if (group != null) {
+                            group.add(field, value);
+                        }
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+
+        Group group = ours.matched ? ours : any;
+        return new RobotsRules(group.rules, group.crawlDelayMs, sitemaps, false);
+    }
+
+    /**
+     * Разрешён ли канонический путь. Канонические пути хранятся без завершающего «/»,
+     * поэтому проверяется и вариант со слешем: правило «Disallow: /admin/» закрывает и «/admin».
+     * Если путь разрешён правилом с «$», оно относится именно к пути без слеша
+     * и вариант со слешем не проверяется.
+     */
+    public boolean isAllowed(String path) {
+        if (rules.isEmpty()) {
+            return true;
+        }
+        Rule best = bestRule(path);
+        if (best != null && (!best.allow || best.anchored)) {
+            return best.allow;
+        }
+        if (path.endsWith("/")) {
+            return true;
+        }
+        Rule withSlash = bestRule(path + "/");
+        return withSlash == null || withSlash.allow;
+    }
+
+    private Rule bestRule(String path) {
+        Rule best = null;
+        for (Rule rule : rules) {
+            if (rule.matches(path) && (best == null || rule.length > best.length
+                    || rule.length == best.length && rule.allow)) {
+                best = rule;
+            }
+        }
+        return best;
+    }
+
+    private static String productToken(String userAgent) {
+        if (userAgent == null) {
+            return "";
+        }
+        String trimmed = userAgent.trim();
+        int end = 0;
+        while (end < trimmed.length() && trimmed.charAt(end) != '/' && !Character.isWhitespace(trimmed.charAt(end))) {
+            end++;
+        }
+        return trimmed.substring(0, end).toLowerCase(Locale.ROOT);
+    }
+
+    private static class Group {
+        private final List<Rule> rules = new ArrayList<>();
+        private long crawlDelayMs;
+        private boolean matched;
+
+        void add(String field, String value) {
+            matched = true;
+            if (field.equals("crawl-delay")) {
+                try {
+                    double seconds = Double.parseDouble(value);
+                    crawlDelayMs = Math.min(MAX_CRAWL_DELAY_MS, Math.max(0, (long) (seconds * 1000)));
+                } catch (NumberFormatException ignored) {
+                    // некорректное значение не меняет темп обхода
+                }
+            } else if (!value.isEmpty()) {
+                // Пустой Disallow ничего не запрещает
+                rules.add(new Rule(value, field.equals("allow")));
+            }
+        }
+    }
+
+    private static class Rule {
+        private final String pattern;
+        private final boolean anchored;
+        private final boolean allow;
+        private final int length;
+
+        Rule(String value, boolean allow) {
+            this.anchored = value.endsWith("$");
+            this.pattern = anchored ? value.substring(0, value.length() - 1) : value;
+            this.allow = allow;
+            this.length = value.length();
+        }
+
+        /**
+         * Сопоставление без рекурсии: при несовпадении возвращаемся только к последней
+         * {@code *}, поэтому время не больше произведения длин шаблона и пути.
+         * Шаблон без {@code $} достаточно сопоставить с началом пути.
+         */
+        boolean matches(String path) {
+            int p = 0;
+            int s = 0;
+            int star = -1;
+            int mark = 0;
+            while (s < path.length()) {
+                if (p < pattern.length() && pattern.charAt(p) == '*') {
+                    star = p++;
+                    mark = s;
+                } else if (p < pattern.length() && pattern.charAt(p) == path.charAt(s)) {
+                    p++;
+                    s++;
+                } else if (p == pattern.length() && !anchored) {
+                    return true;
+                } else if (star >= 0) {
+                    p = star + 1;
+                    s = ++mark;
+                } else {
+                    return false;
+                }
+            }
+            while (p < pattern.length() && pattern.charAt(p) == '*') {
+                p++;
+            }
+            return p == pattern.length();
+        }
+    }
+}
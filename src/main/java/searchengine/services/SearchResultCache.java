@@ -0,0 +1,152 @@
+package searchengine.services;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchConfig;
+import searchengine.dto.search.SearchCacheStats;
+import searchengine.dto.search.SearchResponse;
+import searchengine.models.SiteEntity;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Кэш ответов поиска. Ключ — множество лемм запроса, фильтр по сайту, окно выдачи
+ * и версия индекса: у каждого сайта своя версия, у поиска по всем сайтам — общая.
+ * Любое изменение индекса сайта увеличивает его версию и общую, поэтому устаревшие
+ * ответы больше не находятся и вытесняются по размеру или времени жизни.
+ * <p>
+ * Сниппеты подсвечивают слова запроса, который заполнил запись: другие словоформы
+ * с теми же леммами получают тот же ответ.
+ */
+@Component
+@RequiredArgsConstructor
+public class SearchResultCache {
+
+    private static final String ALL_SITES = "";
+
+    private final SearchConfig searchConfig;
+
+    private final Map<String, AtomicLong> siteVersions = new ConcurrentHashMap<>();
+    private final AtomicLong allSitesVersion = new AtomicLong();
+    private final Map<Integer, PageCount> pageCounts = new ConcurrentHashMap<>();
+    private Cache<Key, SearchResponse> responses;
+
+    @PostConstruct
+    public void init() {
+        responses = CacheBuilder.newBuilder()
+                .maximumWeight(Math.max(0, (long) searchConfig.getCacheMaxSizeKb() * 1024))
+                .weigher((Key key, SearchResponse response) -> weight(response))
+                .expireAfterWrite(searchConfig.getCacheTtlSeconds(), TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Ответ из кэша или вычисленный {@code search}. Одновременные одинаковые запросы
+     * вычисляются один раз. Ответы с ошибкой (например, «сайт не найден») не хранятся:
+     * версия неизвестного сайта не меняется, когда он появляется в индексе.
+     */
+    public SearchResponse get(List<String> lemmas, String site, int offset, int limit, Supplier<SearchResponse> search) {
+        String scope = site == null || site.isEmpty() ? ALL_SITES : site;
+        long version = scope.equals(ALL_SITES) ? allSitesVersion.get() : versionOf(scope).get();
+        Key key = new Key(new TreeSet<>(lemmas).toString(), scope, version, offset, limit);
+        try {
+            SearchResponse response = responses.get(key, search::get);
+            if (!response.isResult()) {
+                responses.invalidate(key);
+            }
+            return response;
+        } catch (UncheckedExecutionException | ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Вызывается после изменения индекса сайта, по которому идёт поиск.
+     */
+    public void invalidateSite(String siteUrl) {
+        versionOf(siteUrl).incrementAndGet();
+        allSitesVersion.incrementAndGet();
+    }
+
+    /**
+     * Число индексируемых страниц поколения сайта. Хранится до следующего изменения
+     * индекса сайта, то есть до той же смены версии, что и ответы поиска.
+     */
+    public int pageCount(SiteEntity site, IntSupplier count) {
+        long version = versionOf(site.getUrl()).get();
+        PageCount cached = pageCounts.get(site.getId());
+        if (cached != null && cached.version == version) {
+            return cached.pages;
+        }
+        int pages = count.getAsInt();
+        pageCounts.put(site.getId(), new PageCount(version, pages));
+        return pages;
+    }
+
+    public SearchCacheStats getStats() {
+        CacheStats stats = responses.stats();
+        return new SearchCacheStats(responses.size(), stats.hitCount(), stats.missCount(), stats.hitRate(),
+                stats.evictionCount(), stats.averageLoadPenalty() / 1_000_000);
+    }
+
+    private AtomicLong versionOf(String siteUrl) {
+        return siteVersions.computeIfAbsent(siteUrl, url -> new AtomicLong());
+    }
+
+    /**
+     * Примерный размер ответа в байтах: строки результатов плюс постоянная часть.
+     */
+    private static int weight(SearchResponse response) {
+        long chars = 0;
+        if (response.getData() != null) {
+            for (SearchResponse.SearchResult result : response.getData()) {
+                chars += length(result.getSite()) + length(result.getSiteName()) + length(result.getUri())
+                        + length(result.getTitle()) + length(result.getSnippet()) + 32;
+            }
+        }
+        if (response.getFacets() != null) {
+            for (SearchResponse.SiteFacet facet : response.getFacets()) {
+                chars += length(facet.getSite()) + length(facet.getSiteName()) + 16;
+            }
+        }
+        return (int) Math.min(Integer.MAX_VALUE, 256 + chars * 2);
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+
+    @RequiredArgsConstructor
+    private static class PageCount {
+        private final long version;
+        private final int pages;
+    }
+
+    @EqualsAndHashCode
+    @RequiredArgsConstructor
+    private static class Key {
+        private final String lemmas;
+        private final String site;
+        private final long version;
+        private final int offset;
+        private final int limit;
+    }
+}
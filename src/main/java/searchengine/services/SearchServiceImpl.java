@@ -3,14 +3,17 @@ package searchengine.services;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import searchengine.config.SearchConfig;
 import searchengine.dto.search.SearchRequest;
 import searchengine.dto.search.SearchResponse;
 import searchengine.models.Lemma;
-import searchengine.models.Page;
 import searchengine.models.SiteEntity;
-import searchengine.repositories.IndexRepository;
 import searchengine.repositories.LemmaRepository;
 import searchengine.repositories.PageRepository;
+import searchengine.repositories.PageRepository.PageSummary;
+import searchengine.repositories.SearchQueryRepository;
+import searchengine.repositories.SearchQueryRepository.Matches;
+import searchengine.repositories.SearchQueryRepository.PageMatch;
 import searchengine.repositories.SiteRepository;
 
 import java.util.*;
@@ -25,222 +28,178 @@ public class SearchServiceImpl implements SearchService {
     private final LemmaRepository lemmaRepository;
     private final PageRepository pageRepository;
     private final SiteRepository siteRepository;
-    private final IndexingService indexingService;
     private final QueryProcessor queryProcessor;
-    private final IndexRepository indexRepository;
+    private final SearchQueryRepository searchQueryRepository;
+    private final SearchConfig searchConfig;
+    private final SearchResultCache searchResultCache;
 
     @Override
     public SearchResponse search(SearchRequest request) {
-        if (indexingService.isCurrentlyIndexing()) {
-            return new SearchResponse(false, "Индексация сайтов выполняется, попробуйте позже");
-        }
-
+        // Во время индексации поиск идёт по текущим поколениям сайтов (см. SiteGenerationService)
         List<String> lemmas = queryProcessor.processQuery(request.getQuery());
         if (lemmas.isEmpty()) {
             return new SearchResponse(false, "Поисковый запрос не содержит значимых слов");
         }
 
         log.info("Поисковый запрос: '{}', обработанные леммы: {}", request.getQuery(), lemmas);
+        return searchResultCache.get(lemmas, request.getSite(), request.getOffset(), request.getLimit(),
+                () -> evaluate(request, lemmas));
+    }
 
+    private SearchResponse evaluate(SearchRequest request, List<String> lemmas) {
         try {
-            SearchResponse response = new SearchResponse(true);
-            List<SearchResponse.SearchResult> results;
-
+            List<Lemma> found;
+            String scope;
             if (request.getSite() != null && !request.getSite().isEmpty()) {
-                Optional<SiteEntity> siteOpt = siteRepository.findByUrl(request.getSite());
+                Optional<SiteEntity> siteOpt = siteRepository.findByUrlAndActiveTrue(request.getSite());
                 if (siteOpt.isEmpty()) {
                     return new SearchResponse(false, "Не найдено в индексе");
                 }
-                SiteEntity site = siteOpt.get();
-                results = searchOnSite(site, lemmas, request.getQuery(), request.getOffset(), request.getLimit());
-                log.info("Найдено {} результатов на сайте {}", results.size(), site.getName());
+                found = lemmaRepository.findByLemmasAndSite(lemmas, siteOpt.get().getId());
+                scope = "на сайте " + siteOpt.get().getName();
             } else {
-                // Поиск по всем сайтам
-                results = searchAllSites(lemmas, request.getQuery(), request.getOffset(), request.getLimit());
-                log.info("Всего найдено {} результатов по всем сайтам", results.size());
+                found = lemmaRepository.findByLemmas(lemmas);
+                scope = "по всем сайтам";
             }
 
-            response.setData(results);
-            response.setCount(countTotalResults(lemmas, request.getSite()));
+            Set<Integer> siteIds = found.stream().map(lemma -> lemma.getSite().getId()).collect(Collectors.toSet());
+            Map<Integer, SiteEntity> sites = siteRepository.findAllById(siteIds).stream()
+                    .collect(Collectors.toMap(SiteEntity::getId, site -> site));
+
+            // Выдача, общее число и число по сайтам — из одного отбора страниц
+            SearchHits hits = findHits(found, lemmas.size(), sites, request.getOffset(), request.getLimit());
+
+            SearchResponse response = new SearchResponse(true);
+            response.setData(buildSearchResults(hits, sites, request.getQuery()));
+            response.setCount(hits.total());
+            response.setApproximate(hits.approximate);
+            response.setFacets(buildFacets(hits, sites));
+            log.info("Найдено {}{} результатов {}", hits.approximate ? "около " : "", response.getCount(), scope);
             return response;
         } catch (Exception e) {
             log.error("Ошибка выполнения поиска для запроса: {}", request.getQuery(), e);
             throw new RuntimeException("Ошибка выполнения поиска: " + e.getMessage(), e);
         }
     }
-    private List<SearchResponse.SearchResult> searchOnSite(SiteEntity site, List<String> lemmas, String originalQuery, int offset, int limit) {
-        List<Lemma> siteLemmas = lemmaRepository.findByLemmasAndSite(lemmas, site.getId());
-        if (siteLemmas.size() < lemmas.size()) {
-            return Collections.emptyList(); // Не все леммы найдены → нет результатов
-        }
 
-        Set<Integer> pageIds = new HashSet<>();
-        boolean first = true;
-
-        for (Lemma lemma : siteLemmas) {
-            Set<Integer> lemmaPageIds = lemmaRepository.findPageIdsByLemmaId(lemma.getId());
-            if (first) {
-                pageIds.addAll(lemmaPageIds);
-                first = false;
-            } else {
-                pageIds.retainAll(lemmaPageIds);
-            }
-            if (pageIds.isEmpty()) {
-                break;
+    /**
+     * Отбирает страницы и считает результаты по сайтам. Если самая редкая лемма сайта встречается
+     * больше чем на {@code search.approximateAbove} страницах, проверяется только столько её страниц,
+     * а число результатов сайта пересчитывается пропорционально числу страниц с ней.
+     */
+    private SearchHits findHits(List<Lemma> found, int queryLemmas, Map<Integer, SiteEntity> sites,
+                                int offset, int limit) {
+        Map<Integer, List<Lemma>> selected = selectLemmas(found, queryLemmas, sites);
+        int sampleSize = searchConfig.getApproximateAbove();
+
+        Map<Integer, List<Integer>> lemmaIdsBySite = new HashMap<>();
+        Map<Integer, Double> scaleBySite = new HashMap<>();
+        selected.forEach((siteId, siteLemmas) -> {
+            lemmaIdsBySite.put(siteId, siteLemmas.stream().map(Lemma::getId).toList());
+            int rarest = siteLemmas.get(0).getFrequency();
+            if (sampleSize > 0 && rarest > sampleSize) {
+                scaleBySite.put(siteId, (double) rarest / sampleSize);
             }
-        }
-
-        if (pageIds.isEmpty()) {
-            return Collections.emptyList();
-        }
-        List<Page> pages = pageRepository.findByIdIn(new ArrayList<>(pageIds));
-        return buildSearchResults(pages, site, originalQuery);
+        });
+
+        SearchHits hits = new SearchHits();
+        hits.approximate = !scaleBySite.isEmpty();
+        Matches matches = searchQueryRepository.findMatches(lemmaIdsBySite, hits.approximate ? sampleSize : null,
+                offset, limit);
+        hits.window = matches.getWindow();
+        hits.maxRank = matches.getMaxRank();
+        hits.countBySite.putAll(matches.getCountBySite());
+        scaleBySite.forEach((siteId, scale) -> hits.countBySite.computeIfPresent(siteId,
+                (id, count) -> (int) Math.round(count * scale)));
+        return hits;
     }
-    private List<SearchResponse.SearchResult> searchAllSites(List<String> lemmas, String originalQuery, int offset, int limit) {
 
-        List<Lemma> allLemmas = lemmaRepository.findByLemmas(lemmas);
-        if (allLemmas.size() < lemmas.size()) {
-            return Collections.emptyList();
-        }
+    private List<SearchResponse.SiteFacet> buildFacets(SearchHits hits, Map<Integer, SiteEntity> sites) {
+        List<SearchResponse.SiteFacet> facets = new ArrayList<>(hits.countBySite.size());
+        hits.countBySite.forEach((siteId, count) -> {
+            SiteEntity site = sites.get(siteId);
+            if (site != null) {
+                facets.add(new SearchResponse.SiteFacet(site.getUrl(), site.getName(), count));
+            }
+        });
+        facets.sort((a, b) -> Integer.compare(b.getCount(), a.getCount()));
+        return facets;
+    }
 
-        Map<Integer, List<Lemma>> lemmasBySite = allLemmas.stream()
+    /**
+     * Леммы запроса по сайтам в порядке возрастания числа страниц с ними. Сайт, где нет хотя бы
+     * одной леммы запроса, пропускается. Леммы, встречающиеся на большей доле индексируемых
+     * страниц сайта, чем {@code search.maxLemmaPageShare}, почти не сужают выдачу и не участвуют
+     * в отборе; самая редкая лемма остаётся всегда. Число страниц сайта берётся из кэша
+     * и пересчитывается только после изменения индекса сайта.
+     */
+    private Map<Integer, List<Lemma>> selectLemmas(List<Lemma> found, int queryLemmas, Map<Integer, SiteEntity> sites) {
+        Map<Integer, List<Lemma>> lemmasBySite = found.stream()
                 .collect(Collectors.groupingBy(lemma -> lemma.getSite().getId()));
 
-        List<SearchResponse.SearchResult> results = new ArrayList<>();
-
-        for (Map.Entry<Integer, List<Lemma>> entry : lemmasBySite.entrySet()) {
-            int siteId = entry.getKey();
-            List<Lemma> siteLemmas = entry.getValue();
-
-            if (siteLemmas.size() < lemmas.size()) {
-                continue;
+        Map<Integer, List<Lemma>> selected = new HashMap<>();
+        lemmasBySite.forEach((siteId, siteLemmas) -> {
+            SiteEntity site = sites.get(siteId);
+            if (site == null || siteLemmas.size() < queryLemmas) {
+                return;
             }
+            siteLemmas.sort(Comparator.comparingInt(Lemma::getFrequency));
+            int pages = searchResultCache.pageCount(site, () -> pageRepository.countIndexableBySiteId(siteId));
+            double maxPages = searchConfig.getMaxLemmaPageShare() * pages;
 
-            Set<Integer> pageIds = new HashSet<>();
-            boolean first = true;
-
+            List<Lemma> kept = new ArrayList<>(siteLemmas.size());
             for (Lemma lemma : siteLemmas) {
-                Set<Integer> lemmaPageIds = lemmaRepository.findPageIdsByLemmaId(lemma.getId());
-                if (first) {
-                    pageIds.addAll(lemmaPageIds);
-                    first = false;
-                } else {
-                    pageIds.retainAll(lemmaPageIds); // Пересечение
-                }
-                if (pageIds.isEmpty()) {
-                    break;
+                if (kept.isEmpty() || lemma.getFrequency() <= maxPages) {
+                    kept.add(lemma);
                 }
             }
+            selected.put(siteId, kept);
+        });
+        return selected;
+    }
 
-            if (pageIds.isEmpty()) {
-                continue;
-            }
-
-            List<Page> pages = pageRepository.findByIdIn(new ArrayList<>(pageIds));
-            SiteEntity site = siteRepository.findById(siteId).orElse(null);
-            if (site == null) continue;
-
-            for (Page page : pages) {
-                float absoluteRelevance = calculateAbsoluteRelevance(page.getId());
-                String title = extractTitle(page.getContent());
-                String snippet = buildSnippet(page.getContent(), originalQuery);
-
-                results.add(new SearchResponse.SearchResult(
-                        site.getUrl(),
-                        site.getName(),
-                        page.getPath(),
-                        title,
-                        snippet,
-                        absoluteRelevance
-                ));
-            }
-        }
-
-        results.sort((a, b) -> Float.compare(b.getRelevance(), a.getRelevance()));
-
-        if (!results.isEmpty()) {
-            float maxRelevance = results.get(0).getRelevance(); // Максимальная (первый элемент после сортировки)
-            for (SearchResponse.SearchResult result : results) {
-                result.setRelevance(result.getRelevance() / maxRelevance);
-            }
-        }
-
-        int fromIndex = Math.min(offset, results.size());
-        int toIndex = Math.min(offset + limit, results.size());
-        if (fromIndex >= toIndex) {
+    /**
+     * Релевантность страницы — сумма рангов лемм запроса на ней (абсолютная), делённая
+     * на максимальную по выдаче (относительная). Одинакова для поиска по сайту и по всем сайтам.
+     * Окно выдачи отбирается по рангу в БД, а текст, заголовок и сниппет загружаются
+     * только для его страниц.
+     */
+    private List<SearchResponse.SearchResult> buildSearchResults(SearchHits hits, Map<Integer, SiteEntity> sites,
+                                                                 String query) {
+        List<PageMatch> window = hits.window;
+        if (window.isEmpty()) {
             return Collections.emptyList();
         }
-        return results.subList(fromIndex, toIndex);
-    }
-    private int countTotalResults(List<String> lemmas, String siteUrl) {
-        if (siteUrl != null && !siteUrl.isEmpty()) {
-            Optional<SiteEntity> siteOpt = siteRepository.findByUrl(siteUrl);
-            if (siteOpt.isEmpty()) return 0;
-
-            List<Lemma> siteLemmas = lemmaRepository.findByLemmasAndSite(lemmas, siteOpt.get().getId());
-            if (siteLemmas.size() < lemmas.size()) return 0;
-
-            Set<Integer> pageIds = siteLemmas.stream()
-                    .map(lemma -> lemmaRepository.findPageIdsByLemmaId(lemma.getId()))
-                    .reduce((a, b) -> {
-                        a.retainAll(b);
-                        return a;
-                    })
-                    .orElse(Collections.emptySet());
-            return pageIds.size();
-        } else {
-            List<Lemma> allLemmas = lemmaRepository.findByLemmas(lemmas);
-            if (allLemmas.size() < lemmas.size()) return 0;
-
-            Set<Integer> pageIds = allLemmas.stream()
-                    .map(lemma -> lemmaRepository.findPageIdsByLemmaId(lemma.getId()))
-                    .reduce((a, b) -> {
-                        a.retainAll(b);
-                        return a;
-                    })
-                    .orElse(Collections.emptySet());
-            return pageIds.size();
-        }
-    }
+        float maxRank = hits.maxRank;
 
-    private List<SearchResponse.SearchResult> buildSearchResults(List<Page> pages, SiteEntity site, String query) {
-        List<SearchResponse.SearchResult> results = new ArrayList<>();
+        List<Integer> pageIds = window.stream().map(PageMatch::getPageId).toList();
+        Map<Integer, PageSummary> pages = pageRepository.findSummariesByIdIn(pageIds).stream()
+                .collect(Collectors.toMap(PageSummary::getId, page -> page));
 
-        for (Page page : pages) {
-            String title = extractTitle(page.getContent());
-            String snippet = buildSnippet(page.getContent(), query);
-            float relevance = calculateRelevance(page, query);
+        List<SearchResponse.SearchResult> results = new ArrayList<>(window.size());
+        for (PageMatch match : window) {
+            SiteEntity site = sites.get(match.getSiteId());
+            PageSummary page = pages.get(match.getPageId());
+            if (site == null || page == null) continue;
 
             results.add(new SearchResponse.SearchResult(
                     site.getUrl(),
                     site.getName(),
                     page.getPath(),
-                    title,
-                    snippet,
-                    relevance
+                    titleOrDefault(page.getTitle()),
+                    buildSnippet(page.getTextContent(), query),
+                    maxRank > 0 ? match.getRank() / maxRank : 0
             ));
         }
-
-        results.sort((a, b) -> Float.compare(b.getRelevance(), a.getRelevance()));
         return results;
     }
 
-    private String extractTitle(String content) {
-        if (content == null || content.isEmpty()) return "Без названия";
-
-        int titleStart = content.toLowerCase().indexOf("<title>");
-        int titleEnd = content.toLowerCase().indexOf("</title>");
-
-        if (titleStart != -1 && titleEnd != -1) {
-            return content.substring(titleStart + 7, titleEnd).trim();
-        }
-        return "Без названия";
+    private String titleOrDefault(String title) {
+        return title == null || title.isEmpty() ? "Без названия" : title;
     }
 
-    private String buildSnippet(String content, String query) {
-        if (content == null || content.isEmpty()) return "";
-
-        String text = content.replaceAll("<[^>]*>", " ").replaceAll("\\s+", " ").trim();
+    private String buildSnippet(String text, String query) {
+        if (text == null || text.isEmpty()) return "";
 
         List<String> keywords = Arrays.asList(query.toLowerCase().split("\\s+"));
 
@@ -276,25 +235,14 @@ public class SearchServiceImpl implements SearchService {
         return context;
     }
 
-    private float calculateAbsoluteRelevance(int pageId) {
-        return (float) indexRepository.findByPageId(pageId).stream()
-                .mapToDouble(searchIndex -> searchIndex.getRank())
-                .sum();
-    }
-
-    private float calculateRelevance(Page page, String query) {
-
-        String content = page.getContent().toLowerCase();
-        String[] keywords = query.toLowerCase().split("\\s+");
+    private static class SearchHits {
+        private List<PageMatch> window = Collections.emptyList();
+        private float maxRank;
+        private final Map<Integer, Integer> countBySite = new HashMap<>();
+        private boolean approximate;
 
-        float matches = 0;
-        for (String keyword : keywords) {
-            if (content.contains(keyword)) {
-                matches += content.split(keyword).length - 1;
-            }
+        int total() {
+            return countBySite.values().stream().mapToInt(Integer::intValue).sum();
         }
-
-        float relevance = matches / (content.length() / 1000f + 1);
-        return Math.min(relevance, 1.0f); // Максимальная релевантность 1.0
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,83 @@
+package searchengine.services;
+
+/**
+ * 64-битный SimHash текста страницы по шинглам из трёх слов. У почти одинаковых
+ * текстов отпечатки отличаются в немногих битах, поэтому близость страниц
+ * оценивается расстоянием Хэмминга между отпечатками.
+ */
+public final class SimHash {
+
+    private static final int SHINGLE_WORDS = 3;
+    private static final int MIN_WORDS = 8;
+    private static final long PRIME = 0x9E3779B97F4A7C15L;
+
+    private SimHash() {
+    }
+
+    /**
+     * Отпечаток текста или {@code null}, если слов слишком мало для надёжного сравнения.
+     * Слова выделяются по буквам и цифрам без учёта регистра, без промежуточных строк.
+     */
+    public static Long of(String text) {
+        if (text == null) {
+            return null;
+        }
+
+        int[] weights = new int[Long.SIZE];
+        long previous = 0;
+        long beforePrevious = 0;
+        int words = 0;
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && !Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            if (i == length) {
+                break;
+            }
+            long word = 1125899906842597L;
+            while (i < length && Character.isLetterOrDigit(text.charAt(i))) {
+                word = 31 * word + Character.toLowerCase(text.charAt(i));
+                i++;
+            }
+
+            words++;
+            if (words >= SHINGLE_WORDS) {
+                addShingle(weights, mix((beforePrevious * PRIME + previous) * PRIME + word));
+            }
+            beforePrevious = previous;
+            previous = word;
+        }
+        if (words < MIN_WORDS) {
+            return null;
+        }
+
+        long fingerprint = 0;
+        for (int bit = 0; bit < Long.SIZE; bit++) {
+            if (weights[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return fingerprint;
+    }
+
+    public static int distance(long first, long second) {
+        return Long.bitCount(first ^ second);
+    }
+
+    private static void addShingle(int[] weights, long hash) {
+        for (int bit = 0; bit < Long.SIZE; bit++) {
+            weights[bit] += (hash >>> bit & 1) != 0 ? 1 : -1;
+        }
+    }
+
+    /**
+     * Финализатор splitmix64: равномерно распределяет биты хэша шингла.
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+}
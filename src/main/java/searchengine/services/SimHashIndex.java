@@ -0,0 +1,82 @@
+package searchengine.services;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Индекс отпечатков страниц сайта для поиска почти-дубликатов. Отпечаток делится
+ * на {@code maxDistance + 1} блоков: по принципу Дирихле у отпечатков с расстоянием
+ * не больше {@code maxDistance} хотя бы один блок совпадает целиком, поэтому
+ * кандидаты ищутся по точному значению блока, а не перебором всех страниц.
+ */
+public class SimHashIndex {
+
+    /**
+     * Блок короче 8 бит почти не отсеивает кандидатов.
+     */
+    public static final int MAX_DISTANCE = 7;
+
+    private final int maxDistance;
+    private final int[] shifts;
+    private final long[] masks;
+    private final List<Map<Long, List<Entry>>> tables = new ArrayList<>();
+
+    public SimHashIndex(int maxDistance) {
+        this.maxDistance = Math.max(0, Math.min(MAX_DISTANCE, maxDistance));
+        int blocks = this.maxDistance + 1;
+        shifts = new int[blocks];
+        masks = new long[blocks];
+
+        int width = Long.SIZE / blocks;
+        for (int block = 0; block < blocks; block++) {
+            shifts[block] = block * width;
+            int bits = block == blocks - 1 ? Long.SIZE - shifts[block] : width;
+            masks[block] = bits == Long.SIZE ? -1L : (1L << bits) - 1;
+            tables.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * Возвращает путь ранее добавленной страницы, близкой к {@code fingerprint}
+     * (кроме самого {@code path}), либо добавляет страницу в индекс и возвращает {@code null}.
+     */
+    public synchronized String findOrAdd(long fingerprint, String path) {
+        for (int block = 0; block < shifts.length; block++) {
+            List<Entry> candidates = tables.get(block).get(blockValue(fingerprint, block));
+            if (candidates == null) {
+                continue;
+            }
+            for (Entry candidate : candidates) {
+                if (SimHash.distance(candidate.fingerprint, fingerprint) <= maxDistance
+                        && !candidate.path.equals(path)) {
+                    return candidate.path;
+                }
+            }
+        }
+        add(fingerprint, path);
+        return null;
+    }
+
+    public synchronized void add(long fingerprint, String path) {
+        Entry entry = new Entry(fingerprint, path);
+        for (int block = 0; block < shifts.length; block++) {
+            tables.get(block).computeIfAbsent(blockValue(fingerprint, block), key -> new ArrayList<>(1)).add(entry);
+        }
+    }
+
+    private long blockValue(long fingerprint, int block) {
+        return fingerprint >>> shifts[block] & masks[block];
+    }
+
+    private static class Entry {
+        private final long fingerprint;
+        private final String path;
+
+        Entry(long fingerprint, String path) {
+            this.fingerprint = fingerprint;
+            this.path = path;
+        }
+    }
+}
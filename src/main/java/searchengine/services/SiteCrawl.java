@@ -0,0 +1,171 @@
+package searchengine.services;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import searchengine.config.CrawlerConfig;
+import searchengine.models.CrawlQueueStatus;
+import searchengine.models.SiteEntity;
+import searchengine.repositories.BulkPageRepository.PageState;
+import searchengine.repositories.CrawlQueueRepository.QueuedPath;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Состояние обхода одного сайта: посещённые пути, очередь путей, ожидающих
+ * слота загрузки (в ширину, с учётом приоритета), и счётчик страниц, ещё не прошедших конвейер до конца.
+ * Обход завершён, когда этот счётчик обнуляется. При инкрементальном обходе
+ * хранит состояние ранее сохранённых страниц для условных запросов.
+ */
+@Slf4j
+@Getter
+public class SiteCrawl {
+
+    private final SiteEntity site;
+    private final String host;
+    private final int maxDepth;
+    private final int maxPages;
+    private final AtomicBoolean stopRequested;
+    private final Map<String, PageState> knownPages;
+    private final VisitedSet visitedPaths;
+    private final Queue<FrontierEntry> waiting = new PriorityBlockingQueue<>();
+    private final AtomicLong sequence = new AtomicLong(0);
+    private final AtomicInteger admitted = new AtomicInteger(0);
+    private final AtomicInteger inFlight = new AtomicInteger(0);
+    private final AtomicInteger pending = new AtomicInteger(0);
+    private final AtomicInteger counter = new AtomicInteger(0);
+    private final AtomicInteger unchanged = new AtomicInteger(0);
+    private final AtomicInteger disallowed = new AtomicInteger(0);
+    private final AtomicInteger duplicates = new AtomicInteger(0);
+    private final SimHashIndex fingerprints;
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    private List<QueuedPath> resumePaths;
+    @Setter
+    private volatile RobotsRules robots = RobotsRules.allowAll();
+
+    /**
+     * @param knownPages сохранённые ранее страницы сайта для инкрементального обхода
+     *                   или {@code null} для полного обхода
+     */
+    public SiteCrawl(SiteEntity site, CrawlerConfig crawlerConfig, AtomicBoolean stopRequested,
+                     Map<String, PageState> knownPages) {
+        this.site = site;
+        this.host = PolitenessScheduler.hostOf(site.getUrl());
+        this.maxDepth = crawlerConfig.getMaxDepth();
+        this.maxPages = crawlerConfig.getMaxPagesPerSite();
+        this.visitedPaths = VisitedSet.create(crawlerConfig);
+        this.stopRequested = stopRequested;
+        this.knownPages = knownPages;
+        this.fingerprints = crawlerConfig.isDetectDuplicates()
+                ? new SimHashIndex(crawlerConfig.getDuplicateMaxDistance())
+                : null;
+        if (fingerprints != null && knownPages != null) {
+            knownPages.forEach((path, state) -> {
+                if (state.getSimhash() != null && state.getCanonicalPath() == null) {
+                    fingerprints.add(state.getSimhash(), path);
+                }
+            });
+        }
+    }
+
+    /**
+     * Путь страницы, почти-дубликатом которой является текст с отпечатком {@code simhash},
+     * или {@code null}; в последнем случае страница становится кандидатом для следующих.
+     */
+    public String findCanonical(String path, Long simhash) {
+        return fingerprints != null && simhash != null ? fingerprints.findOrAdd(simhash, path) : null;
+    }
+
+    public boolean isStopped() {
+        return stopRequested.get();
+    }
+
+    public boolean isIncremental() {
+        return knownPages != null;
+    }
+
+    /**
+     * Восстанавливает обход из сохранённой очереди: обработанные пути считаются посещёнными,
+     * а ожидавшие и неудачные будут загружены заново.
+     */
+    public void restore(List<QueuedPath> frontier) {
+        resumePaths = new ArrayList<>();
+        for (QueuedPath queued : frontier) {
+            if (queued.getStatus() == CrawlQueueStatus.DONE) {
+                visitedPaths.add(queued.getPath());
+                admitted.incrementAndGet();
+            } else {
+                resumePaths.add(queued);
+            }
+        }
+    }
+
+    public boolean isResumed() {
+        return resumePaths != null;
+    }
+
+    public PageState knownPage(String path) {
+        return knownPages != null ? knownPages.get(path) : null;
+    }
+
+    /**
+     * Отмечает путь как обнаруженный. Возвращает {@code false}, если путь уже встречался,
+     * лежит глубже {@code maxDepth} или лимит страниц сайта исчерпан (0 — без ограничения).
+     */
+    boolean markDiscovered(String path, int depth) {
+        if (maxDepth > 0 && depth > maxDepth) {
+            return false;
+        }
+        if (!visitedPaths.add(path)) {
+            return false;
+        }
+        if (maxPages > 0 && admitted.incrementAndGet() > maxPages) {
+            return false;
+        }
+        pending.incrementAndGet();
+        return true;
+    }
+
+    FrontierEntry newEntry(String path, int depth, float priority) {
+        return new FrontierEntry(path, depth, priority, sequence.getAndIncrement());
+    }
+
+    /**
+     * Отмечает, что страница прошла конвейер (или была отброшена).
+     */
+    void finishPage() {
+        if (pending.decrementAndGet() == 0) {
+            completion.complete(null);
+        }
+    }
+
+    public static String resolveFullUrl(String baseUrl, String path) {
+        try {
+            URL base = new URL(baseUrl);
+            URL absolute = new URL(base, path);
+            return absolute.toString();
+        } catch (MalformedURLException e) {
+            log.warn("Ошибка разрешения URL: {}{}", baseUrl, path);
+            if (path.startsWith("/")) {
+                try {
+                    URL url = new URL(baseUrl);
+                    return url.getProtocol() + "://" + url.getHost() +
+                            (url.getPort() != -1 ? ":" + url.getPort() : "") + path;
+                } catch (MalformedURLException ex) {
+                    return baseUrl + path;
+                }
+            }
+            return baseUrl + (path.startsWith("/") ? path.substring(1) : path);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package searchengine.services;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.models.SiteEntity;
+import searchengine.models.Status;
+import searchengine.repositories.SiteGenerationRepository;
+import searchengine.repositories.SiteRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поколения индекса сайта. Полная индексация пишет в новое поколение, пока поиск
+ * работает по текущему; по завершении обхода поколения переключаются одной транзакцией,
+ * а старое удаляется в фоне — после паузы, чтобы успели завершиться начатые по нему запросы.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SiteGenerationService {
+
+    private static final long DROP_DELAY_SECONDS = 30;
+    private static final long DROP_RETRY_SECONDS = 60;
+    private static final int DROP_BATCH_PAGES = 500;
+
+    private final SiteRepository siteRepository;
+    private final SiteGenerationRepository siteGenerationRepository;
+    private final LemmaDictionary lemmaDictionary;
+    private final FrontierStore frontierStore;
+    private final PlatformTransactionManager transactionManager;
+    private final SearchResultCache searchResultCache;
+
+    private TransactionTemplate transactionTemplate;
+    private ScheduledExecutorService dropper;
+
+    @PostConstruct
+    public void start() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        dropper = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("generation-dropper").setDaemon(true).build());
+
+        // Поколения, которые были заменены или брошены, но не успели удалиться до остановки приложения
+        // (INDEXED — замененные до появления статуса DISCARDED)
+        for (SiteEntity leftover : siteRepository.findByActiveFalseAndStatusIn(
+                List.of(Status.DISCARDED, Status.INDEXED))) {
+            scheduleDrop(leftover.getId(), 0);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dropper.shutdownNow();
+    }
+
+    /**
+     * Создаёт новое поколение сайта. Поиск его не видит до {@link #activate}.
+     */
+    public SiteEntity createGeneration(String url, String name) {
+        SiteEntity site = new SiteEntity();
+        site.setUrl(url);
+        site.setName(name);
+        site.setActive(false);
+        site.setGeneration(siteRepository.findMaxGeneration(url) + 1);
+        site.statusTimeUpdate(Status.INDEXING);
+        return siteRepository.save(site);
+    }
+
+    /**
+     * Помечает сайт проиндексированным. Если это новое поколение, оно заменяет текущее
+     * в поиске, а прежнее удаляется в фоне.
+     */
+    public void activate(SiteEntity site) {
+        site.statusTimeUpdate(Status.INDEXED);
+        if (site.isActive()) {
+            siteRepository.save(site);
+            searchResultCache.invalidateSite(site.getUrl());
+            return;
+        }
+
+        List<Integer> superseded = transactionTemplate.execute(status -> {
+            List<Integer> ids = siteGenerationRepository.deactivateOthers(site.getUrl(), site.getId());
+            siteGenerationRepository.activate(site.getId(), site.getStatusTime());
+            return ids;
+        });
+        site.setActive(true);
+        site.setLastError(null);
+        searchResultCache.invalidateSite(site.getUrl());
+        log.info("🔀 Сайт {}: в поиске поколение {}", site.getName(), site.getGeneration());
+
+        for (int siteId : superseded) {
+            scheduleDrop(siteId, DROP_DELAY_SECONDS);
+        }
+    }
+
+    /**
+     * Удаляет недостроенное поколение, которое больше не будет продолжено. Статус меняется
+     * сразу, чтобы поколение перестало находиться как недостроенное ещё до удаления.
+     */
+    public void discard(SiteEntity site) {
+        siteGenerationRepository.discard(site.getId());
+        site.setStatus(Status.DISCARDED);
+        log.info("Недостроенное поколение {} сайта {} будет удалено", site.getGeneration(), site.getName());
+        scheduleDrop(site.getId(), 0);
+    }
+
+    private void scheduleDrop(int siteId, long delaySeconds) {
+        dropper.schedule(() -> drop(siteId), delaySeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Страницы удаляются пачками, чтобы не держать одну длинную транзакцию на весь индекс сайта.
+     */
+    private void drop(int siteId) {
+        try {
+            long start = System.currentTimeMillis();
+            frontierStore.clear(siteId);
+            int pages = 0;
+            int deleted;
+            do {
+                deleted = siteGenerationRepository.deletePages(siteId, DROP_BATCH_PAGES);
+                pages += deleted;
+            } while (deleted > 0 && !Thread.currentThread().isInterrupted());
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            siteGenerationRepository.deleteSite(siteId);
+            lemmaDictionary.evict(siteId);
+            log.info("🗑️ Удалено старое поколение сайта (id {}): страниц {}, {} мс",
+                    siteId, pages, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("💥 Ошибка удаления поколения сайта (id {}), повтор через {} с", siteId, DROP_RETRY_SECONDS, e);
+            scheduleDrop(siteId, DROP_RETRY_SECONDS);
+        }
+    }
+}
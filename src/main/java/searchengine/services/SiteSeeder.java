@@ -0,0 +1,226 @@
+package searchengine.services;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerConfig;
+import searchengine.models.SiteEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Подготовка обхода сайта по robots.txt и sitemap: правила доступа и Crawl-delay,
+ * а также начальный набор путей с приоритетами. Приоритет пути — {@code priority}
+ * из sitemap (по умолчанию 0.5) плюс надбавка за свежесть {@code lastmod}, которая
+ * вдвое убывает каждые {@value #FRESHNESS_HALF_LIFE_DAYS} дней.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SiteSeeder {
+
+    private static final long ROBOTS_MAX_BYTES = 512 * 1024;
+    private static final int ROBOTS_ATTEMPTS = 3;
+    private static final int MAX_SITEMAP_FILES = 50;
+    private static final float DEFAULT_PRIORITY = 0.5f;
+    private static final float FRESHNESS_WEIGHT = 0.5f;
+    private static final int FRESHNESS_HALF_LIFE_DAYS = 30;
+
+    private final CrawlerConfig crawlerConfig;
+    private final PageFetcher pageFetcher;
+    private final PolitenessScheduler politenessScheduler;
+
+    /**
+     * Правила robots.txt сайта. Если файла нет или он недоступен по сети, обход ничем не ограничен.
+     * На ошибку сервера (5xx) запрос повторяется до {@value #ROBOTS_ATTEMPTS} раз, затем сайт
+     * считается временно закрытым для обхода. Ожидание слота снимается остановкой обхода.
+     */
+    public RobotsRules loadRobots(SiteCrawl crawl) {
+        SiteEntity site = crawl.getSite();
+        String url = SiteCrawl.resolveFullUrl(site.getUrl(), "/robots.txt");
+        try {
+            for (int attempt = 1; attempt <= ROBOTS_ATTEMPTS; attempt++) {
+                FetchResult result = fetch(url, ROBOTS_MAX_BYTES, crawl);
+                if (result == null) {
+                    return RobotsRules.allowAll();
+                }
+                if (result.getStatusCode() >= 500) {
+                    // Повтор идёт через планировщик, который после 5xx уже увеличил интервал
+                    log.warn("⚠️ robots.txt сайта {} вернул код {} (попытка {} из {})",
+                            site.getName(), result.getStatusCode(), attempt, ROBOTS_ATTEMPTS);
+                    continue;
+                }
+                if (result.getStatusCode() != 200 || result.isOversized()) {
+                    log.debug("robots.txt сайта {} не получен (код: {})", site.getName(), result.getStatusCode());
+                    return RobotsRules.allowAll();
+                }
+                RobotsRules rules = RobotsRules.parse(result.decode(charsetOf(result)), crawlerConfig.getUserAgent());
+                log.info("🤖 robots.txt сайта {}: Crawl-delay {} мс, sitemap: {}",
+                        site.getName(), rules.getCrawlDelayMs(), rules.getSitemaps().size());
+                return rules;
+            }
+            return RobotsRules.unavailable();
+        } catch (IOException e) {
+            log.warn("⚠️ Ошибка загрузки robots.txt сайта {}: {}", site.getName(), e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return RobotsRules.allowAll();
+    }
+
+    /**
+     * Пути сайта из sitemap, включая вложенные через sitemap index. Если robots.txt
+     * не указывает sitemap, пробуется {@code /sitemap.xml}. Пути других сайтов отбрасываются.
+     * Остановка обхода прерывает чтение между файлами и снимает ожидание слота загрузки.
+     */
+    public List<SeedUrl> loadSitemaps(SiteCrawl crawl, List<String> declared) {
+        SiteEntity site = crawl.getSite();
+        int maxUrls = crawlerConfig.getSitemapMaxUrls();
+        if (maxUrls <= 0) {
+            return Collections.emptyList();
+        }
+
+        Deque<String> files = new ArrayDeque<>(declared.isEmpty()
+                ? List.of(SiteCrawl.resolveFullUrl(site.getUrl(), "/sitemap.xml"))
+                : declared);
+        Set<String> seenFiles = new HashSet<>();
+        Map<String, Float> seeds = new LinkedHashMap<>();
+        LocalDate today = LocalDate.now();
+
+        while (!files.isEmpty() && seenFiles.size() < MAX_SITEMAP_FILES && seeds.size() < maxUrls
+                && !crawl.isStopped()) {
+            String file = files.poll();
+            if (!seenFiles.add(file)) {
+                continue;
+            }
+            Document sitemap = loadSitemap(file, crawl);
+            if (sitemap == null) {
+                continue;
+            }
+
+            for (Element loc : sitemap.select("sitemap > loc")) {
+                files.add(loc.text().trim());
+            }
+            for (Element url : sitemap.select("url")) {
+                Element loc = url.selectFirst("loc");
+                String path = loc != null ? UrlCanonicalizer.internalPath(loc.text().trim(), site.getUrl()) : null;
+                if (path != null) {
+                    seeds.merge(path, priority(url, today), Math::max);
+                    if (seeds.size() >= maxUrls) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        List<SeedUrl> result = new ArrayList<>(seeds.size());
+        seeds.forEach((path, priority) -> result.add(new SeedUrl(path, priority)));
+        log.info("🗺️ Из sitemap сайта {} получено путей: {} (файлов: {})",
+                site.getName(), result.size(), seenFiles.size());
+        return result;
+    }
+
+    private Document loadSitemap(String url, SiteCrawl crawl) {
+        try {
+            FetchResult result = fetch(url, (long) crawlerConfig.getSitemapMaxSizeKb() * 1024, crawl);
+            if (result == null) {
+                return null;
+            }
+            if (result.getStatusCode() != 200 || result.isOversized()) {
+                log.debug("Sitemap {} не получен (код: {})", url, result.getStatusCode());
+                return null;
+            }
+            try (InputStream in = sitemapStream(result.getBody())) {
+                return Jsoup.parse(in, null, url, Parser.xmlParser());
+            }
+        } catch (IOException e) {
+            log.warn("⚠️ Ошибка загрузки sitemap {}: {}", url, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    /**
+     * Файлы {@code sitemap.xml.gz} обычно отдаются как есть, без Content-Encoding:
+     * распаковываем по сигнатуре gzip.
+     */
+    private InputStream sitemapStream(byte[] body) throws IOException {
+        InputStream in = new ByteArrayInputStream(body);
+        boolean gzip = body.length > 2 && (body[0] & 0xff) == 0x1f && (body[1] & 0xff) == 0x8b;
+        return gzip ? new GZIPInputStream(in) : in;
+    }
+
+    private float priority(Element url, LocalDate today) {
+        float priority = DEFAULT_PRIORITY;
+        Element value = url.selectFirst("priority");
+        if (value != null) {
+            try {
+                priority = Math.max(0f, Math.min(1f, Float.parseFloat(value.text().trim())));
+            } catch (NumberFormatException ignored) {
+                // остаётся приоритет по умолчанию
+            }
+        }
+
+        Element lastmod = url.selectFirst("lastmod");
+        if (lastmod != null && lastmod.text().trim().length() >= 10) {
+            try {
+                LocalDate modified = LocalDate.parse(lastmod.text().trim().substring(0, 10));
+                long age = Math.max(0, ChronoUnit.DAYS.between(modified, today));
+                priority += FRESHNESS_WEIGHT * (float) Math.pow(0.5, (double) age / FRESHNESS_HALF_LIFE_DAYS);
+            } catch (DateTimeParseException ignored) {
+                // без даты — без надбавки за свежесть
+            }
+        }
+        return priority;
+    }
+
+    /**
+     * Загружает файл в слоте планировщика. Слот, запрошенный для обхода {@code crawl},
+     * снимается при его остановке — тогда файл не загружается и возвращается {@code null}.
+     */
+    private FetchResult fetch(String url, long maxBytes, SiteCrawl crawl) throws IOException, InterruptedException {
+        String host = PolitenessScheduler.hostOf(url);
+        CountDownLatch slot = new CountDownLatch(1);
+        politenessScheduler.schedule(host, crawl, slot::countDown, slot::countDown);
+        slot.await();
+        if (crawl != null && crawl.isStopped()) {
+            return null;
+        }
+
+        FetchResult result = pageFetcher.fetchResource(url, maxBytes);
+        politenessScheduler.onResponse(host, result.getStatusCode(),
+                result.getResponseTimeMs(), result.getRetryAfterMs());
+        return result;
+    }
+
+    private static Charset charsetOf(FetchResult result) {
+        try {
+            return result.getCharset() != null ? Charset.forName(result.getCharset()) : StandardCharsets.UTF_8;
+        } catch (IllegalArgumentException e) {
+            return StandardCharsets.UTF_8;
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class SeedUrl {
+        private final String path;
+        private final float priority;
+    }
+}
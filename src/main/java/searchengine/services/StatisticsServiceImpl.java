@@ -38,6 +38,7 @@ public class StatisticsServiceImpl implements StatisticsService {
 
         List<DetailedStatisticsItem> detailed = new ArrayList<>();
         int totalPages = 0;
+        int totalDuplicates = 0;
         int totalLemmas = 0;
 
         for (Site siteConfig : sitesList.getSites()) {
@@ -45,34 +46,43 @@ public class StatisticsServiceImpl implements StatisticsService {
             item.setUrl(siteConfig.getUrl());
             item.setName(siteConfig.getName());
 
-            String normalizedUrl = normalizeUrl(siteConfig.getUrl());
-            Optional<SiteEntity> siteEntityOpt = siteRepository.findByUrl(normalizedUrl);
+            String normalizedUrl = UrlCanonicalizer.siteUrl(siteConfig.getUrl());
+            // Статус — строящегося поколения, если оно есть; объём — того, по которому идёт поиск
+            Optional<SiteEntity> activeOpt = siteRepository.findByUrlAndActiveTrue(normalizedUrl);
+            Optional<SiteEntity> buildingOpt = siteRepository.findBuildingByUrl(normalizedUrl);
+            Optional<SiteEntity> siteEntityOpt = activeOpt.or(() -> buildingOpt);
 
             if (siteEntityOpt.isPresent()) {
                 SiteEntity siteEntity = siteEntityOpt.get();
-                item.setStatus(siteEntity.getStatus().name());
-                item.setError(siteEntity.getLastError() != null ? siteEntity.getLastError() : "");
-                item.setStatusTime(siteEntity.getStatusTime().toInstant(ZoneOffset.UTC).toEpochMilli());
+                SiteEntity statusEntity = buildingOpt.orElse(siteEntity);
+                item.setStatus(statusEntity.getStatus().name());
+                item.setError(statusEntity.getLastError() != null ? statusEntity.getLastError() : "");
+                item.setStatusTime(statusEntity.getStatusTime().toInstant(ZoneOffset.UTC).toEpochMilli());
 
                 int pagesCount = pageRepository.countBySiteId(siteEntity.getId());
+                int duplicatesCount = pageRepository.countDuplicatesBySiteId(siteEntity.getId());
                 int lemmasCount = lemmaRepository.findBySiteId(siteEntity.getId()).size();
 
                 item.setPages(pagesCount);
+                item.setDuplicates(duplicatesCount);
                 item.setLemmas(lemmasCount);
 
                 totalPages += pagesCount;
+                totalDuplicates += duplicatesCount;
                 totalLemmas += lemmasCount;
             } else {
                 item.setStatus("NOT_INDEXED");
                 item.setError("");
                 item.setStatusTime(0);
                 item.setPages(0);
+                item.setDuplicates(0);
                 item.setLemmas(0);
             }
             detailed.add(item);
         }
 
         total.setPages(totalPages);
+        total.setDuplicates(totalDuplicates);
         total.setLemmas(totalLemmas);
 
         StatisticsData data = new StatisticsData();
@@ -85,7 +95,4 @@ public class StatisticsServiceImpl implements StatisticsService {
         return response;
     }
 
-    private String normalizeUrl(String url) {
-        return url.endsWith("/") ? url : url + "/";
-    }
 }
\ No newline at end of file
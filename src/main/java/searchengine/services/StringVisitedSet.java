@@ -0,0 +1,27 @@
+package searchengine.services;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Точное множество строк путей. Самое затратное по памяти, зато без коллизий.
+ */
+public class StringVisitedSet implements VisitedSet {
+
+    private final Set<String> paths = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public boolean add(String path) {
+        return paths.add(path);
+    }
+
+    @Override
+    public boolean contains(String path) {
+        return paths.contains(path);
+    }
+
+    @Override
+    public long size() {
+        return paths.size();
+    }
+}
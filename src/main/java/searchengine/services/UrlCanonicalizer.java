@@ -0,0 +1,180 @@
+package searchengine.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Единая нормализация адресов для обхода, индексации отдельной страницы и статистики.
+ * <p>
+ * Канонический путь страницы: начинается с «/», без query, fragment и завершающих «/»;
+ * корень сайта — «/». Схема и хост сравниваются без учёта регистра, http и https
+ * считаются одним сайтом.
+ */
+public final class UrlCanonicalizer {
+
+    public static final Set<String> EXCLUDED_EXTENSIONS = Set.of(
+            ".jpg", ".jpeg", ".png", ".gif", ".svg", ".ico", ".webp", ".bmp", ".tiff",
+            ".css", ".js", ".json", ".pdf", ".doc", ".docx", ".xls", ".xlsx", ".ppt",
+            ".pptx", ".odt", ".rtf", ".zip", ".rar", ".7z", ".tar", ".gz", ".mp3",
+            ".mp4", ".avi", ".mov", ".wmv", ".flv", ".wav", ".ogg", ".webm", ".woff",
+            ".woff2", ".ttf", ".eot", ".otf", ".xml", ".rss", ".atom", ".txt", ".csv",
+            ".exe", ".dmg", ".apk", ".jar", ".bin", ".iso", ".tar.gz", ".tgz"
+    );
+
+    /**
+     * Исключённые расширения без точки, сгруппированные по длине: проверка пути —
+     * сравнение хвоста с несколькими кандидатами той же длины.
+     */
+    private static final String[][] EXTENSIONS_BY_LENGTH = buildExtensionTable();
+
+    private UrlCanonicalizer() {
+    }
+
+    /**
+     * Канонический путь ссылки {@code url}, если она ведёт на сайт {@code siteUrl}
+     * (тот же хост и порт, путь внутри пути сайта), иначе {@code null}.
+     */
+    public static String internalPath(String url, String siteUrl) {
+        int urlHost = hostStart(url);
+        int siteHost = hostStart(siteUrl);
+        if (urlHost < 0 || siteHost < 0) {
+            return null;
+        }
+
+        int urlPath = authorityEnd(url, urlHost);
+        int sitePath = authorityEnd(siteUrl, siteHost);
+        int authorityLength = sitePath - siteHost;
+        if (urlPath - urlHost != authorityLength
+                || !url.regionMatches(true, urlHost, siteUrl, siteHost, authorityLength)) {
+            return null;
+        }
+
+        int urlEnd = trimTrailingSlashes(url, urlPath, pathEnd(url, urlPath));
+        int siteEnd = trimTrailingSlashes(siteUrl, sitePath, pathEnd(siteUrl, sitePath));
+        int prefixLength = siteEnd - sitePath;
+        if (prefixLength > 0) {
+            boolean underSitePath = urlEnd - urlPath >= prefixLength
+                    && url.regionMatches(urlPath, siteUrl, sitePath, prefixLength)
+                    && (urlEnd - urlPath == prefixLength || url.charAt(urlPath + prefixLength) == '/');
+            if (!underSitePath) {
+                return null;
+            }
+        }
+
+        return urlEnd > urlPath ? url.substring(urlPath, urlEnd) : "/";
+    }
+
+    /**
+     * Канонический адрес сайта: схема и хост в нижнем регистре, путь без query и fragment,
+     * ровно один завершающий «/».
+     */
+    public static String siteUrl(String url) {
+        int host = hostStart(url);
+        if (host < 0) {
+            return url.endsWith("/") ? url : url + "/";
+        }
+        int path = authorityEnd(url, host);
+        int end = trimTrailingSlashes(url, path, pathEnd(url, path));
+        return url.substring(0, path).toLowerCase() + url.substring(path, end) + "/";
+    }
+
+    /**
+     * Может ли путь вести на HTML-страницу: расширение последнего сегмента
+     * (без учёта регистра и query) не входит в {@link #EXCLUDED_EXTENSIONS}.
+     */
+    public static boolean isHtmlPath(String path) {
+        if (path == null || path.isEmpty() || path.charAt(0) == '#') {
+            return false;
+        }
+
+        int end = pathEnd(path, 0);
+        for (int i = end - 1; i >= 0; i--) {
+            char c = path.charAt(i);
+            if (c == '/') {
+                return true;
+            }
+            if (c == '.') {
+                return i == 0 || !isExcludedExtension(path, i + 1, end);
+            }
+        }
+        return true;
+    }
+
+    private static boolean isExcludedExtension(String path, int from, int to) {
+        int length = to - from;
+        if (length <= 0 || length >= EXTENSIONS_BY_LENGTH.length) {
+            return false;
+        }
+        for (String extension : EXTENSIONS_BY_LENGTH[length]) {
+            if (path.regionMatches(true, from, extension, 0, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Начало хоста для http/https-адреса или -1 для других схем.
+     */
+    private static int hostStart(String url) {
+        if (url.regionMatches(true, 0, "http://", 0, 7)) {
+            return 7;
+        }
+        if (url.regionMatches(true, 0, "https://", 0, 8)) {
+            return 8;
+        }
+        return -1;
+    }
+
+    private static int authorityEnd(String url, int from) {
+        for (int i = from; i < url.length(); i++) {
+            char c = url.charAt(i);
+            if (c == '/' || c == '?' || c == '#') {
+                return i;
+            }
+        }
+        return url.length();
+    }
+
+    private static int pathEnd(String url, int from) {
+        for (int i = from; i < url.length(); i++) {
+            char c = url.charAt(i);
+            if (c == '?' || c == '#') {
+                return i;
+            }
+        }
+        return url.length();
+    }
+
+    private static int trimTrailingSlashes(String url, int from, int to) {
+        while (to > from && url.charAt(to - 1) == '/') {
+            to--;
+        }
+        return to;
+    }
+
+    private static String[][] buildExtensionTable() {
+        int maxLength = 0;
+        for (String extension : EXCLUDED_EXTENSIONS) {
+            maxLength = Math.max(maxLength, extension.length());
+        }
+
+        List<List<String>> byLength = new ArrayList<>();
+        for (int i = 0; i < maxLength; i++) {
+            byLength.add(new ArrayList<>());
+        }
+        for (String extension : EXCLUDED_EXTENSIONS) {
+            // «.tar.gz» покрывается «.gz»: сравнивается только последнее расширение
+            if (extension.indexOf('.', 1) < 0) {
+                byLength.get(extension.length() - 1).add(extension.substring(1));
+            }
+        }
+
+        String[][] table = new String[maxLength][];
+        for (int i = 0; i < maxLength; i++) {
+            table[i] = byLength.get(i).toArray(new String[0]);
+        }
+        return table;
+    }
+}
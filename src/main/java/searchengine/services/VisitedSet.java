@@ -0,0 +1,40 @@
+package searchengine.services;
+
+import searchengine.config.CrawlerConfig;
+
+/**
+ * Множество посещённых путей сайта. Реализация выбирается параметром
+ * {@code crawler.visitedSet}:
+ * <ul>
+ *     <li>{@code exact} — строки путей целиком;</li>
+ *     <li>{@code fingerprint} — 64-битные отпечатки путей в примитивных хеш-таблицах;</li>
+ *     <li>{@code bloom} — масштабируемый фильтр Блума вне кучи, с ограниченной памятью
+ *     и редкими ложными срабатываниями (страница может быть пропущена).</li>
+ * </ul>
+ */
+public interface VisitedSet {
+
+    /**
+     * Добавляет путь. Возвращает {@code false}, если путь уже был в множестве.
+     */
+    boolean add(String path);
+
+    boolean contains(String path);
+
+    long size();
+
+    static VisitedSet create(CrawlerConfig crawlerConfig) {
+        String type = crawlerConfig.getVisitedSet() == null ? "" : crawlerConfig.getVisitedSet().toLowerCase();
+        switch (type) {
+            case "exact":
+                return new StringVisitedSet();
+            case "bloom":
+                return new BloomVisitedSet(crawlerConfig.getBloomExpectedUrls(), crawlerConfig.getBloomFalsePositiveRate());
+            case "fingerprint":
+            case "":
+                return new FingerprintVisitedSet();
+            default:
+                throw new IllegalArgumentException("Неизвестный тип множества посещённых путей: " + type);
+        }
+    }
+}
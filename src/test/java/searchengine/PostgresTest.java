@@ -0,0 +1,87 @@
+package searchengine;
+
+import liquibase.Liquibase;
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+
+/**
+ * Основа тестов SQL, который работает только в PostgreSQL. Запускаются, если задан
+ * {@code TEST_DB_URL} (и при необходимости {@code TEST_DB_USER}, {@code TEST_DB_PASSWORD}):
+ * каждый тестовый класс получает свою схему с применённым changelog и удаляет её после себя.
+ */
+@EnabledIfEnvironmentVariable(named = "TEST_DB_URL", matches = ".+")
+public abstract class PostgresTest {
+
+    private static final String URL = System.getenv("TEST_DB_URL");
+    private static final String USER = System.getenv().getOrDefault("TEST_DB_USER", "postgres");
+    private static final String PASSWORD = System.getenv().getOrDefault("TEST_DB_PASSWORD", "");
+
+    protected static JdbcTemplate jdbcTemplate;
+    protected static PlatformTransactionManager transactionManager;
+    private static String schema;
+
+    @BeforeAll
+    static void createSchema() throws Exception {
+        schema = "test_" + Long.toHexString(System.nanoTime());
+        try (Connection connection = DriverManager.getConnection(URL, USER, PASSWORD);
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE SCHEMA " + schema);
+        }
+
+        String schemaUrl = URL + (URL.contains("?") ? "&" : "?") + "currentSchema=" + schema;
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(schemaUrl, USER, PASSWORD);
+        try (Connection connection = dataSource.getConnection()) {
+            Database database = DatabaseFactory.getInstance()
+                    .findCorrectDatabaseImplementation(new JdbcConnection(connection));
+            database.setDefaultSchemaName(schema);
+            new Liquibase("db/changelog/db.changelog-master.yaml", new ClassLoaderResourceAccessor(), database)
+                    .update("");
+        }
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+    }
+
+    @AfterAll
+    static void dropSchema() throws Exception {
+        try (Connection connection = DriverManager.getConnection(URL, USER, PASSWORD);
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP SCHEMA " + schema + " CASCADE");
+        }
+    }
+
+    protected static int insertSite(String url, boolean active) {
+        return jdbcTemplate.queryForObject("""
+                INSERT INTO site (status, status_time, url, name, active)
+                VALUES ('INDEXED', now(), ?, ?, ?) RETURNING id""", Integer.class, url, url, active);
+    }
+
+    protected static int insertPage(int siteId, String path) {
+        return jdbcTemplate.queryForObject("""
+                INSERT INTO page (site_id, path, code, content) VALUES (?, ?, 200, '') RETURNING id""",
+                Integer.class, siteId, path);
+    }
+
+    protected static int insertLemma(int siteId, String lemma, int frequency) {
+        return jdbcTemplate.queryForObject("""
+                INSERT INTO lemma (site_id, lemma, frequency) VALUES (?, ?, ?) RETURNING id""",
+                Integer.class, siteId, lemma, frequency);
+    }
+
+    protected static void insertIndex(int pageId, int lemmaId, float rank) {
+        jdbcTemplate.update("INSERT INTO search_index (page_id, lemma_id, rank_index) VALUES (?, ?, ?)",
+                pageId, lemmaId, rank);
+    }
+}
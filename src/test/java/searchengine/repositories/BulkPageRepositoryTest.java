@@ -0,0 +1,34 @@
+package searchengine.repositories;
+
+import org.junit.jupiter.api.Test;
+import searchengine.PostgresTest;
+import searchengine.repositories.BulkPageRepository.PageState;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BulkPageRepositoryTest extends PostgresTest {
+
+    /**
+     * Отпечаток читается независимо от соседних колонок: короткая страница без отпечатка
+     * не должна получить 0, а страница без хэша содержимого — потерять свой отпечаток.
+     */
+    @Test
+    void pageStatesKeepNullAndNonNullSimhash() {
+        BulkPageRepository repository = new BulkPageRepository(jdbcTemplate);
+        int siteId = insertSite("https://pages.example/", true);
+
+        repository.upsertPages(List.of(siteId, siteId), List.of("/stub", "/article"), List.of(200, 200),
+                List.of("<html></html>", "<html></html>"), Arrays.asList(null, null), Arrays.asList("мало", "текст"),
+                Arrays.asList(null, null), Arrays.asList(null, null), Arrays.asList("hash", null),
+                Arrays.asList(null, 0x5a5a5a5a5a5a5a5aL), Arrays.asList(null, null), (site, path, pageId) -> {
+                });
+
+        Map<String, PageState> states = repository.findPageStates(siteId);
+        assertThat(states.get("/stub").getContentHash()).isEqualTo("hash");
+        assertThat(states.get("/stub").getSimhash()).isNull();
+        assertThat(states.get("/article").getContentHash()).isNull();
+        assertThat(states.get("/article").getSimhash()).isEqualTo(0x5a5a5a5a5a5a5a5aL);
+    }
+}
@@ -0,0 +1,84 @@
+package searchengine.repositories;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import searchengine.PostgresTest;
+import searchengine.repositories.SearchQueryRepository.Matches;
+import searchengine.repositories.SearchQueryRepository.PageMatch;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SearchQueryRepositoryTest extends PostgresTest {
+
+    private static SearchQueryRepository repository;
+    private static Map<Integer, List<Integer>> query;
+    private static List<PageMatch> expected;
+    private static Map<Integer, Integer> expectedCounts;
+
+    /**
+     * Два сайта, леммы «common» на каждой странице и «rare» на каждой третьей.
+     * Ранги повторяются, чтобы порядок при равном ранге тоже проверялся.
+     */
+    @BeforeAll
+    static void fillIndex() {
+        repository = new SearchQueryRepository(jdbcTemplate);
+        query = new HashMap<>();
+        expected = new ArrayList<>();
+        expectedCounts = new HashMap<>();
+
+        for (String url : List.of("https://a.example/", "https://b.example/")) {
+            int siteId = insertSite(url, true);
+            int common = insertLemma(siteId, "common", 0);
+            int rare = insertLemma(siteId, "rare", 0);
+            for (int i = 0; i < 60; i++) {
+                int pageId = insertPage(siteId, "/page/" + i);
+                insertIndex(pageId, common, 1 + i % 4);
+                if (i % 3 == 0) {
+                    insertIndex(pageId, rare, 1 + i % 5);
+                    expected.add(new PageMatch(pageId, siteId, (1 + i % 4) + (1 + i % 5)));
+                    expectedCounts.merge(siteId, 1, Integer::sum);
+                }
+            }
+            query.put(siteId, List.of(rare, common));
+        }
+        expected.sort(Comparator.comparing(PageMatch::getRank, Comparator.reverseOrder())
+                .thenComparingInt(PageMatch::getPageId));
+    }
+
+    @Test
+    void returnsOnlyRequestedWindowInRankOrder() {
+        for (int offset : new int[]{0, 7, 35}) {
+            Matches matches = repository.findMatches(query, null, offset, 10);
+            List<PageMatch> window = expected.subList(offset, Math.min(offset + 10, expected.size()));
+            assertThat(matches.getWindow()).extracting(PageMatch::getPageId)
+                    .containsExactlyElementsOf(window.stream().map(PageMatch::getPageId).toList());
+        }
+    }
+
+    @Test
+    void countsAllMatchesPerSiteRegardlessOfWindow() {
+        Matches matches = repository.findMatches(query, null, 0, 5);
+        assertThat(matches.getWindow()).hasSize(5);
+        assertThat(matches.getCountBySite()).isEqualTo(expectedCounts);
+        assertThat(matches.getMaxRank()).isEqualTo(expected.get(0).getRank());
+    }
+
+    @Test
+    void windowPastTheEndIsEmptyButCountsRemain() {
+        Matches matches = repository.findMatches(query, null, expected.size(), 10);
+        assertThat(matches.getWindow()).isEmpty();
+        assertThat(matches.getCountBySite()).isEqualTo(expectedCounts);
+    }
+
+    @Test
+    void siteWithoutAllLemmasHasNoMatches() {
+        int siteId = query.keySet().iterator().next();
+        int missing = insertLemma(siteId, "missing", 0);
+        Matches matches = repository.findMatches(
+                Map.of(siteId, List.of(missing, query.get(siteId).get(0))), null, 0, 10);
+        assertThat(matches.getWindow()).isEmpty();
+        assertThat(matches.getCountBySite()).isEmpty();
+    }
+}
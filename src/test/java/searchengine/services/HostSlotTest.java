@@ -0,0 +1,81 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+import searchengine.config.CrawlerConfig;
+import searchengine.dto.indexing.HostCrawlState;
+import searchengine.services.PolitenessScheduler.HostSlot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HostSlotTest {
+
+    private static HostSlot newSlot() {
+        CrawlerConfig config = new CrawlerConfig();
+        config.setDelayMinMs(100);
+        config.setDelayMaxMs(1000);
+        config.setDelayStepMs(100);
+        config.setMinConcurrentPagesPerSite(1);
+        config.setMaxConcurrentPagesPerSite(8);
+        config.setMaxConnectionsPerHost(8);
+        config.setMaxErrorRate(0.05);
+        return new HostSlot("example.com", config);
+    }
+
+    private static void assertState(HostSlot slot, int concurrency, long delayMs) {
+        HostCrawlState state = slot.toState();
+        assertThat(state.getConcurrencyLimit()).isEqualTo(concurrency);
+        assertThat(state.getDelayMs()).isEqualTo(delayMs);
+    }
+
+    @Test
+    void growsByOneStepPerWindowOfSuccesses() {
+        HostSlot slot = newSlot();
+        assertState(slot, 1, 550);
+
+        slot.succeed(100);
+        assertState(slot, 2, 450);
+
+        // При двух одновременных запросах окно — два ответа
+        slot.succeed(100);
+        assertState(slot, 2, 400);
+        slot.succeed(100);
+        assertState(slot, 3, 350);
+    }
+
+    @Test
+    void halvesOncePerIntervalAndWaitsForErrorRateToSettle() {
+        HostSlot slot = newSlot();
+        slot.succeed(100);
+        slot.succeed(100);
+        slot.succeed(100);
+        assertState(slot, 3, 350);
+
+        slot.backOff(-1);
+        assertState(slot, 1, 700);
+        // Повторное снижение в течение секунды не применяется
+        slot.backOff(-1);
+        assertState(slot, 1, 700);
+
+        // Доля ошибок 0.19 опускается до порога 0.05 только за 13 успешных ответов
+        for (int i = 0; i < 12; i++) {
+            slot.succeed(100);
+            assertState(slot, 1, 700);
+        }
+        slot.succeed(100);
+        assertState(slot, 2, 600);
+    }
+
+    @Test
+    void holdsWhileLatencyRises() {
+        HostSlot slot = newSlot();
+        for (int i = 0; i < 4; i++) {
+            slot.succeed(100);
+        }
+        HostCrawlState before = slot.toState();
+
+        slot.succeed(1000);
+        HostCrawlState after = slot.toState();
+        assertThat(after.getConcurrencyLimit()).isEqualTo(before.getConcurrencyLimit());
+        assertThat(after.getDelayMs()).isEqualTo(before.getDelayMs());
+    }
+}
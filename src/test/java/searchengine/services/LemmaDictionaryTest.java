@@ -0,0 +1,93 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import searchengine.PostgresTest;
+import searchengine.config.CrawlerConfig;
+import searchengine.models.SiteEntity;
+import searchengine.repositories.BulkIndexRepository;
+import searchengine.repositories.BulkPageRepository;
+import searchengine.repositories.SiteRepository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LemmaDictionaryTest extends PostgresTest {
+
+    private LemmaDictionary lemmaDictionary;
+    private PageWriter pageWriter;
+    private SiteEntity site;
+    private final CountDownLatch resolved = new CountDownLatch(1);
+
+    /**
+     * Запись страницы останавливается между получением id лемм и записью индекса —
+     * в это окно и запускается удаление неиспользуемых лемм.
+     */
+    @BeforeEach
+    void setUp() {
+        BulkIndexRepository bulkIndexRepository = new BulkIndexRepository(jdbcTemplate);
+        lemmaDictionary = new LemmaDictionary(bulkIndexRepository, new CrawlerConfig(), transactionManager,
+                mock(SiteRepository.class), mock(SearchResultCache.class));
+        lemmaDictionary.start();
+
+        LemmaProcessingService lemmaProcessingService = mock(LemmaProcessingService.class);
+        when(lemmaProcessingService.resolveLemmas(any(), any())).thenAnswer(invocation -> {
+            SiteEntity target = invocation.getArgument(0);
+            Map<String, Integer> lemmas = invocation.getArgument(1);
+            Map<String, Integer> ids = lemmaDictionary.resolveIds(target.getId(), lemmas.keySet());
+            resolved.countDown();
+            Thread.sleep(300);
+            return Map.of(ids.get("stale"), lemmas.get("stale"));
+        });
+        pageWriter = new PageWriter(new BulkPageRepository(jdbcTemplate), bulkIndexRepository,
+                lemmaProcessingService, lemmaDictionary, transactionManager, mock(SearchResultCache.class));
+        pageWriter.init();
+
+        String url = "https://lemmas-" + System.nanoTime() + ".example/";
+        site = new SiteEntity();
+        site.setId(insertSite(url, true));
+        site.setUrl(url);
+    }
+
+    @AfterEach
+    void tearDown() {
+        lemmaDictionary.shutdown();
+    }
+
+    @Test
+    void cleanupWaitsForConcurrentPageIndex() throws Exception {
+        insertLemma(site.getId(), "unused", 0);
+        int stale = insertLemma(site.getId(), "stale", 0);
+        // id «stale» уже в кэше словаря, как у задания, начатого до удаления
+        assertThat(lemmaDictionary.resolveIds(site.getId(), List.of("stale"))).containsEntry("stale", stale);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> page = executor.submit(() -> pageWriter.write(List.of(new PageRecord(site, "/page", 200,
+                    "<html></html>", "title", "text", Map.of("stale", 2), null, null, null))));
+            assertThat(resolved.await(5, TimeUnit.SECONDS)).isTrue();
+            Future<Integer> cleanup = executor.submit(() -> lemmaDictionary.removeUnusedLemmas(site.getId()));
+
+            // Удаление ждёт запись целиком, включая приращение частоты, и само сбрасывает частоты
+            page.get(5, TimeUnit.SECONDS);
+            assertThat(cleanup.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(jdbcTemplate.queryForList("SELECT lemma FROM lemma WHERE site_id = ?", String.class, site.getId()))
+                .containsExactly("stale");
+        assertThat(jdbcTemplate.queryForObject("SELECT frequency FROM lemma WHERE id = ?", Integer.class, stale))
+                .isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM search_index WHERE lemma_id = ?",
+                Integer.class, stale)).isEqualTo(1);
+        assertThat(lemmaDictionary.resolveIds(site.getId(), List.of("stale"))).containsEntry("stale", stale);
+    }
+}
@@ -0,0 +1,152 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RobotsRulesTest {
+
+    private static final String USER_AGENT = "HeliontSearchBot (+https://heliont.ru/bot.html)";
+
+    private static RobotsRules parse(String text) {
+        return RobotsRules.parse(text, USER_AGENT);
+    }
+
+    @Test
+    void longestMatchingRuleWins() {
+        RobotsRules rules = parse("""
+                User-agent: *
+                Disallow: /admin
+                Allow: /admin/public
+                """);
+        assertThat(rules.isAllowed("/admin/settings")).isFalse();
+        assertThat(rules.isAllowed("/admin/public/page")).isTrue();
+        assertThat(rules.isAllowed("/news")).isTrue();
+    }
+
+    @Test
+    void allowWinsTieOfEqualLength() {
+        RobotsRules rules = parse("""
+                User-agent: *
+                Disallow: /page
+                Allow: /page
+                """);
+        assertThat(rules.isAllowed("/page")).isTrue();
+    }
+
+    @Test
+    void dollarAnchorsPatternToEndOfPath() {
+        RobotsRules rules = parse("""
+                User-agent: *
+                Disallow: /*.php$
+                """);
+        assertThat(rules.isAllowed("/index.php")).isFalse();
+        assertThat(rules.isAllowed("/index.php5")).isTrue();
+        assertThat(rules.isAllowed("/index.php/page")).isTrue();
+    }
+
+    @Test
+    void anchoredAllowIsNotOverriddenBySlashVariant() {
+        RobotsRules rules = parse("""
+                User-agent: *
+                Allow: /*.html$
+                Allow: /about$
+                Disallow: /
+                """);
+        assertThat(rules.isAllowed("/page.html")).isTrue();
+        assertThat(rules.isAllowed("/docs/page.html")).isTrue();
+        assertThat(rules.isAllowed("/about")).isTrue();
+        assertThat(rules.isAllowed("/about/team")).isFalse();
+        assertThat(rules.isAllowed("/contacts")).isFalse();
+    }
+
+    @Test
+    void starMatchesAnySequence() {
+        RobotsRules rules = parse("""
+                User-agent: *
+                Disallow: /*/print
+                Disallow: /a*b*c$
+                """);
+        assertThat(rules.isAllowed("/news/print")).isFalse();
+        assertThat(rules.isAllowed("/news/2024/print/1")).isFalse();
+        assertThat(rules.isAllowed("/print")).isTrue();
+        assertThat(rules.isAllowed("/axxbyyc")).isFalse();
+        assertThat(rules.isAllowed("/axxbyycd")).isTrue();
+    }
+
+    @Test
+    @Timeout(5)
+    void manyStarsDoNotBacktrackExponentially() {
+        RobotsRules rules = parse("User-agent: *\nDisallow: /" + "*a".repeat(30) + "b$\n");
+        assertThat(rules.isAllowed("/" + "a".repeat(5000))).isTrue();
+    }
+
+    @Test
+    void disallowedDirectoryCoversPathWithoutSlash() {
+        RobotsRules rules = parse("""
+                User-agent: *
+                Disallow: /private/
+                """);
+        assertThat(rules.isAllowed("/private")).isFalse();
+        assertThat(rules.isAllowed("/privateer")).isTrue();
+    }
+
+    @Test
+    void ownGroupReplacesWildcardGroup() {
+        RobotsRules rules = parse("""
+                User-agent: *
+                Disallow: /
+
+                User-agent: heliontsearchbot
+                Disallow: /tmp
+                Crawl-delay: 2
+                """);
+        assertThat(rules.isAllowed("/news")).isTrue();
+        assertThat(rules.isAllowed("/tmp")).isFalse();
+        assertThat(rules.getCrawlDelayMs()).isEqualTo(2000);
+    }
+
+    @Test
+    void agentMustMatchWholeProductToken() {
+        RobotsRules rules = parse("""
+                User-agent: Search
+                Disallow: /
+
+                User-agent: *
+                Disallow: /tmp
+                """);
+        assertThat(rules.isAllowed("/news")).isTrue();
+        assertThat(rules.isAllowed("/tmp")).isFalse();
+    }
+
+    @Test
+    void groupMayListSeveralAgents() {
+        RobotsRules rules = parse("""
+                User-agent: OtherBot
+                User-agent: HeliontSearchBot/2.0
+                Disallow: /shared
+                """);
+        assertThat(rules.isAllowed("/shared")).isFalse();
+    }
+
+    @Test
+    void collectsSitemapsAndIgnoresEmptyDisallow() {
+        RobotsRules rules = parse("""
+                User-agent: *
+                Disallow:
+                Sitemap: https://example.com/sitemap.xml
+                """);
+        assertThat(rules.isAllowed("/anything")).isTrue();
+        assertThat(rules.getSitemaps()).containsExactly("https://example.com/sitemap.xml");
+    }
+
+    @Test
+    void unavailableSiteDisallowsEverything() {
+        RobotsRules rules = RobotsRules.unavailable();
+        assertThat(rules.isUnavailable()).isTrue();
+        assertThat(rules.isAllowed("/")).isFalse();
+        assertThat(rules.isAllowed("/news")).isFalse();
+        assertThat(RobotsRules.allowAll().isUnavailable()).isFalse();
+    }
+}
@@ -0,0 +1,66 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SimHashTest {
+
+    private static final String TEXT = "Интернет-магазин бытовой техники предлагает холодильники, стиральные машины, "
+            + "пылесосы и микроволновые печи с доставкой по всей стране и гарантией производителя на два года";
+
+    @Test
+    void shortTextHasNoFingerprint() {
+        assertThat(SimHash.of(null)).isNull();
+        assertThat(SimHash.of("всего несколько слов")).isNull();
+    }
+
+    @Test
+    void ignoresCaseAndPunctuation() {
+        String noisy = TEXT.toUpperCase().replace(",", " ;; ").replace(" ", "  ");
+        assertThat(SimHash.of(noisy)).isEqualTo(SimHash.of(TEXT));
+    }
+
+    @Test
+    void nearDuplicatesAreCloserThanDifferentTexts() {
+        long original = SimHash.of(TEXT + " " + TEXT);
+        long edited = SimHash.of(TEXT + " " + TEXT.replace("два года", "три года"));
+        long other = SimHash.of("Новости города: в субботу в парке пройдёт ярмарка, концерт местных музыкантов "
+                + "и забег на пять километров, вход свободный для всех жителей и гостей");
+        assertThat(SimHash.distance(original, edited)).isLessThan(SimHash.distance(original, other));
+    }
+
+    @Test
+    void indexFindsEveryFingerprintWithinMaxDistance() {
+        Random random = new Random(42);
+        for (int maxDistance = 0; maxDistance <= SimHashIndex.MAX_DISTANCE; maxDistance++) {
+            for (int round = 0; round < 200; round++) {
+                SimHashIndex index = new SimHashIndex(maxDistance);
+                long fingerprint = random.nextLong();
+                index.add(fingerprint, "/original");
+                long near = flipBits(fingerprint, maxDistance, random);
+                assertThat(index.findOrAdd(near, "/copy")).isEqualTo("/original");
+            }
+        }
+    }
+
+    @Test
+    void indexIgnoresFingerprintsBeyondMaxDistance() {
+        Random random = new Random(7);
+        SimHashIndex index = new SimHashIndex(3);
+        long fingerprint = random.nextLong();
+        index.add(fingerprint, "/original");
+        assertThat(index.findOrAdd(flipBits(fingerprint, 4, random), "/other")).isNull();
+        assertThat(index.findOrAdd(fingerprint, "/original")).isNull();
+    }
+
+    private static long flipBits(long fingerprint, int count, Random random) {
+        long flipped = fingerprint;
+        while (SimHash.distance(fingerprint, flipped) < count) {
+            flipped ^= 1L << random.nextInt(Long.SIZE);
+        }
+        return flipped;
+    }
+}
@@ -0,0 +1,66 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UrlCanonicalizerTest {
+
+    private static final String SITE = "https://example.com/";
+
+    @Test
+    void dropsQueryFragmentAndTrailingSlashes() {
+        assertThat(UrlCanonicalizer.internalPath("https://example.com/catalog/?page=2#top", SITE))
+                .isEqualTo("/catalog");
+        assertThat(UrlCanonicalizer.internalPath("https://example.com/catalog//", SITE)).isEqualTo("/catalog");
+        assertThat(UrlCanonicalizer.internalPath("https://example.com", SITE)).isEqualTo("/");
+        assertThat(UrlCanonicalizer.internalPath("https://example.com/?utm=1", SITE)).isEqualTo("/");
+    }
+
+    @Test
+    void treatsHttpAndHttpsAsOneSite() {
+        assertThat(UrlCanonicalizer.internalPath("http://example.com/about", SITE)).isEqualTo("/about");
+        assertThat(UrlCanonicalizer.internalPath("https://example.com/about", "http://example.com/"))
+                .isEqualTo("/about");
+    }
+
+    @Test
+    void comparesSchemeAndHostIgnoringCaseButKeepsPathCase() {
+        assertThat(UrlCanonicalizer.internalPath("HTTPS://Example.COM/About", SITE)).isEqualTo("/About");
+    }
+
+    @Test
+    void rejectsOtherHostsPortsAndSchemes() {
+        assertThat(UrlCanonicalizer.internalPath("https://example.com:8080/about", SITE)).isNull();
+        assertThat(UrlCanonicalizer.internalPath("https://example.com.evil.org/about", SITE)).isNull();
+        assertThat(UrlCanonicalizer.internalPath("https://sub.example.com/about", SITE)).isNull();
+        assertThat(UrlCanonicalizer.internalPath("ftp://example.com/about", SITE)).isNull();
+        assertThat(UrlCanonicalizer.internalPath("https://example.com:8080/about", "https://example.com:8080/"))
+                .isEqualTo("/about");
+    }
+
+    @Test
+    void keepsLinksInsideSitePath() {
+        String site = "https://example.com/shop/";
+        assertThat(UrlCanonicalizer.internalPath("https://example.com/shop/item/1", site)).isEqualTo("/shop/item/1");
+        assertThat(UrlCanonicalizer.internalPath("https://example.com/shop", site)).isEqualTo("/shop");
+        assertThat(UrlCanonicalizer.internalPath("https://example.com/shopping", site)).isNull();
+        assertThat(UrlCanonicalizer.internalPath("https://example.com/blog", site)).isNull();
+    }
+
+    @Test
+    void normalizesSiteUrl() {
+        assertThat(UrlCanonicalizer.siteUrl("HTTPS://Example.com")).isEqualTo("https://example.com/");
+        assertThat(UrlCanonicalizer.siteUrl("https://example.com/shop//?a=1#b")).isEqualTo("https://example.com/shop/");
+    }
+
+    @Test
+    void filtersNonHtmlExtensions() {
+        assertThat(UrlCanonicalizer.isHtmlPath("/news/item")).isTrue();
+        assertThat(UrlCanonicalizer.isHtmlPath("/index.php")).isTrue();
+        assertThat(UrlCanonicalizer.isHtmlPath("/images/logo.PNG")).isFalse();
+        assertThat(UrlCanonicalizer.isHtmlPath("/files/archive.tar.gz")).isFalse();
+        assertThat(UrlCanonicalizer.isHtmlPath("/report.pdf?download=1")).isFalse();
+        assertThat(UrlCanonicalizer.isHtmlPath("/v1.2/docs")).isTrue();
+    }
+}
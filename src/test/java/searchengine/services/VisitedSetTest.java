@@ -0,0 +1,117 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VisitedSetTest {
+
+    private static final int ADDED = 200_000;
+    private static final int PROBES = 200_000;
+
+    @Test
+    void fingerprintSetIsExactOnAddedPaths() {
+        VisitedSet visited = new FingerprintVisitedSet();
+        for (int i = 0; i < ADDED; i++) {
+            assertThat(visited.add("/catalog/item/" + i)).isTrue();
+        }
+        for (int i = 0; i < ADDED; i += 997) {
+            assertThat(visited.add("/catalog/item/" + i)).isFalse();
+            assertThat(visited.contains("/catalog/item/" + i)).isTrue();
+        }
+        assertThat(visited.size()).isEqualTo(ADDED);
+        assertThat(falsePositives(visited)).isZero();
+    }
+
+    @Test
+    void bloomSetStaysWithinFalsePositiveRate() {
+        double rate = 0.01;
+        VisitedSet visited = new BloomVisitedSet(ADDED, rate);
+        for (int i = 0; i < ADDED; i++) {
+            visited.add("/catalog/item/" + i);
+        }
+        for (int i = 0; i < ADDED; i += 997) {
+            assertThat(visited.contains("/catalog/item/" + i)).isTrue();
+        }
+        assertThat((double) falsePositives(visited) / PROBES).isLessThanOrEqualTo(rate);
+    }
+
+    @Test
+    void bloomSetKeepsRateWhenGrowingPastExpectedSize() {
+        double rate = 0.01;
+        VisitedSet visited = new BloomVisitedSet(ADDED / 8, rate);
+        for (int i = 0; i < ADDED; i++) {
+            visited.add("/catalog/item/" + i);
+        }
+        for (int i = 0; i < ADDED; i += 997) {
+            assertThat(visited.contains("/catalog/item/" + i)).isTrue();
+        }
+        assertThat((double) falsePositives(visited) / PROBES).isLessThanOrEqualTo(rate);
+    }
+
+    @Test
+    void fingerprintSetAddsEachPathOnceAcrossThreads() throws Exception {
+        AtomicIntegerArray added = addConcurrently(new FingerprintVisitedSet(), 20_000);
+        for (int i = 0; i < added.length(); i++) {
+            assertThat(added.get(i)).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void bloomSetAddsEachPathAtMostOnceAcrossThreadsWhileGrowing() throws Exception {
+        VisitedSet visited = new BloomVisitedSet(1024, 0.01);
+        AtomicIntegerArray added = addConcurrently(visited, 20_000);
+        long total = 0;
+        for (int i = 0; i < added.length(); i++) {
+            assertThat(added.get(i)).isLessThanOrEqualTo(1);
+            total += added.get(i);
+        }
+        assertThat(visited.size()).isEqualTo(total);
+    }
+
+    /**
+     * Несколько потоков одновременно добавляют одни и те же пути.
+     * Возвращает, сколько раз {@code add} вернул {@code true} для каждого пути.
+     */
+    private static AtomicIntegerArray addConcurrently(VisitedSet visited, int paths) throws Exception {
+        int threads = 8;
+        AtomicIntegerArray added = new AtomicIntegerArray(paths);
+        CyclicBarrier start = new CyclicBarrier(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                workers.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < paths; i++) {
+                        if (visited.add("/catalog/item/" + i)) {
+                            added.incrementAndGet(i);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return added;
+    }
+
+    private static int falsePositives(VisitedSet visited) {
+        int hits = 0;
+        for (int i = 0; i < PROBES; i++) {
+            if (visited.contains("/news/" + i)) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+}